@@ -3,6 +3,7 @@ package project5;
 import java.util.Iterator;
 import java.util.Arrays;
 import java.util.Stack;
+import java.util.ConcurrentModificationException;
 import java.util.NoSuchElementException;
 
 /**
@@ -15,34 +16,167 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
     //Intentionally protected to guarantee access from any inheriting class 
     protected Node root;   //reference to the root node of the tree 
     protected int size;    
+    protected boolean balanced; //true if add and remove keep the tree AVL balanced
+    protected int modCount;     //number of structural modifications, used by iterators to fail fast
+
+    //number of levels a walk handles by recursion before it switches to following parent links
+    private static final int MAX_RECURSION = 256;
     
     /**
     * Constructs a new empty tree sorted according to the natural ordering of its elements
     */
     public BST() {
+        this(false);
+    }
+
+    /**
+    * Constructs a new empty tree sorted according to the natural ordering of its elements
+    * If balanced is true, the tree rebalances itself (AVL) after every add and remove 
+    * so that its height stays O(log n) regardless of the insertion order
+    *
+    * @param balanced true to keep this tree balanced, false for plain insertion order
+    */
+    public BST(boolean balanced) {
         root = null;
         size = 0;
+        this.balanced = balanced;
     }
 
     /**
     * Constructs a new tree containing the elements in the specified collection, 
     * sorted according to the natural ordering of its elements.
+    * The tree is built balanced in O(n) after sorting
     * 
     * @param collection the collection whose elements will comprise the new tree
     * @throws NullPointerException if the specified collection is null
     */
     public BST(E[] collection) {
+        this(false);
+        buildBalanced(collection);
+    }
+
+    /**
+    * Replaces the contents of this tree with the elements in the specified collection
+    * Sorts a copy of the collection, drops duplicates (keeping the element that comes 
+    * first in the collection) and builds a balanced tree from it in O(n)
+    * 
+    * @param collection the collection whose elements will comprise this tree
+    * @throws NullPointerException if the specified collection or one of its elements is null
+    */
+    public void buildBalanced(E[] collection) {
         if (collection == null) {
             throw new NullPointerException("Collection cannot be null");
         }
 
-        Arrays.sort(collection);
+        //the sort is stable, so the first of several equal elements stays in front
+        E[] sorted = Arrays.copyOf(collection, collection.length);
+        Arrays.sort(sorted);
 
-        root = buildBalancedTree(collection, 0, collection.length - 1);
+        int length = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (length == 0 || sorted[length - 1].compareTo(sorted[i]) != 0) {
+                sorted[length] = sorted[i];
+                length++;
+            }
+        }
+
+        buildFrom(sorted, length);
+    }
+
+    /**
+    * Replaces the contents of this tree with the elements of the specified iterator, 
+    * which must return them in ascending order. Equal consecutive elements are 
+    * added once. Builds a balanced tree in O(n) without sorting or comparing 
+    * elements beyond checking their order
+    * 
+    * @param sortedElements iterator over the elements in ascending order
+    * @throws NullPointerException if the iterator or one of its elements is null
+    * @throws IllegalArgumentException if the elements are not in ascending order
+    */
+    public void buildBalanced(Iterator<E> sortedElements) {
+        if (sortedElements == null) {
+            throw new NullPointerException("Iterator cannot be null");
+        }
+
+        E[] sorted = newArray(16);
+        int length = 0;
+        while (sortedElements.hasNext()) {
+            E element = sortedElements.next();
+            if (element == null) {
+                throw new NullPointerException("Elements can not be null");
+            }
+
+            if (length > 0) {
+                int compare = sorted[length - 1].compareTo(element);
+                if (compare == 0) {
+                    continue;
+                } else if (compare > 0) {
+                    throw new IllegalArgumentException("Elements are not in ascending order");
+                }
+            }
+
+            if (length == sorted.length) {
+                sorted = Arrays.copyOf(sorted, length * 2);
+            }
+            sorted[length] = element;
+            length++;
+        }
+
+        buildFrom(sorted, length);
+    }
+
+    /**
+    * Returns an array for elements of this tree. Every element is a Comparable and 
+    * the array never leaves the tree, so a Comparable array can stand in for an E[]
+    * 
+    * @param length the length of the array
+    * @return array an array of the given length filled with null
+    */
+    @SuppressWarnings("unchecked")
+    private E[] newArray(int length) {
+        return (E[]) new Comparable<?>[length];
+    }
+
+    /**
+    * Returns an array for nodes of this tree
+    * 
+    * @param length the length of the array
+    * @return array an array of the given length filled with null
+    */
+    @SuppressWarnings("unchecked")
+    protected Node[] newNodeArray(int length) {
+        return (Node[]) new BST<?>.Node[length];
+    }
+
+    /**
+    * Replaces the contents of this tree with a balanced tree built 
+    * from the first length elements of a sorted array without duplicates
+    * 
+    * @param sorted the elements in ascending order
+    * @param length the number of elements to use
+    */
+    private void buildFrom(E[] sorted, int length) {
+        root = buildBalancedTree(sorted, 0, length - 1);
+        size = length;
+
+        //the builder creates parents before their children, so summaries are done afterwards
+        if (root != null) {
+            walk(root, new Visitor() {
+                @Override
+                protected void leave(Node node, int depth) {
+                    updateSummary(node);
+                }
+            });
+        }
+        modCount++;
+        subtreeChanged(null);
     }
 
     /**
     * Builds a balanced binary search tree from a sorted collection
+    * Works through the index ranges with an explicit stack instead of recursion. 
+    * Each node takes the middle of its range, so a range of k elements becomes 
+    * a subtree of size k and height equal to the bit length of k
     * 
     * @param collection the sorted collection of elements
     * @param left the starting index of the collection
@@ -54,13 +188,54 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
             return null;
         }
 
-        int mid = (left + right) / 2;
-        Node node = new Node(collection[mid]);
+        //ranges still to be built, with the node they hang from; at most one 
+        //range per level waits on the stack, so 64 entries are always enough
+        int[] lefts = new int[64];
+        int[] rights = new int[64];
+        Node[] parents = newNodeArray(64);
+        boolean[] leftChild = new boolean[64];
+        lefts[0] = left;
+        rights[0] = right;
+        int top = 1;
+
+        Node subtreeRoot = null;
+        while (top > 0) {
+            top--;
+            int lo = lefts[top];
+            int hi = rights[top];
+            Node parent = parents[top];
+            parents[top] = null;
+
+            int mid = (lo + hi) >>> 1;
+            Node node = new Node(collection[mid]);
+            node.size = hi - lo + 1;
+            node.height = 32 - Integer.numberOfLeadingZeros(node.size);
+            node.parent = parent;
+            if (parent == null) {
+                subtreeRoot = node;
+            } else if (leftChild[top]) {
+                parent.left = node;
+            } else {
+                parent.right = node;
+            }
 
-        node.left = buildBalancedTree(collection, left, mid - 1);
-        node.right = buildBalancedTree(collection, mid + 1, right);
+            if (mid < hi) {
+                lefts[top] = mid + 1;
+                rights[top] = hi;
+                parents[top] = node;
+                leftChild[top] = false;
+                top++;
+            }
+            if (lo < mid) {
+                lefts[top] = lo;
+                rights[top] = mid - 1;
+                parents[top] = node;
+                leftChild[top] = true;
+                top++;
+            }
+        }
 
-        return node;
+        return subtreeRoot;
     }
 
     /**
@@ -79,17 +254,31 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
         if (root == null ) {// create the first node 
             root = new Node (data);
             size++;
+            modCount++;
+            subtreeChanged(root);
+            if (TreeMetrics.ENABLED) {
+                TreeMetrics.recordAdd(0);
+            }
             return true;
         }
 
+        long key = keyOf(data);
+        int comparisons = 0;
         Node current = root;
         while (current != null ) {
-            int compare = current.data.compareTo(data);
+            int compare = compare(current, data, key);
+            comparisons++;
             if (compare > 0) { //add in the left subtree
                 if (current.left == null ) {
                     current.left = new Node (data);
+                    current.left.parent = current;
                     size++;
+                    modCount++;
+                    subtreeChanged(current);
                     updateHeight(current);
+                    if (TreeMetrics.ENABLED) {
+                        TreeMetrics.recordAdd(comparisons);
+                    }
                     return true; 
                 }
                 else {
@@ -98,14 +287,23 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
             } else if (compare < 0 ) {//add in the right subtree
                 if (current.right == null ) {
                     current.right = new Node (data);
+                    current.right.parent = current;
                     size++;
+                    modCount++;
+                    subtreeChanged(current);
                     updateHeight(current);
+                    if (TreeMetrics.ENABLED) {
+                        TreeMetrics.recordAdd(comparisons);
+                    }
                     return true;
                 }
                 else {
                     current = current.right; 
                 }
             } else { //duplicate 
+                if (TreeMetrics.ENABLED) {
+                    TreeMetrics.recordAdd(comparisons);
+                }
                 return false; 
             }
         }
@@ -115,64 +313,228 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
     }
 
     /**
-    * Updates the height of all nodes affected by an insertion or deletion
-    * Propagates the height adjustment upward from the specified node
+    * Updates the height and subtree size of all nodes affected by an insertion or deletion
+    * Propagates the adjustment upward from the specified node
+    * and rebalances every node on the way if this tree is balanced
     * 
     * @param node the node at which to start updating heights
     */
     private void updateHeight(Node node) {
+        int steps = 0;
         while (node != null) {
-            int leftHeight = 0;
-            int rightHeight = 0;
+            //remember the parent before any rotation moves node down
+            Node parent = node.parent;
+            steps++;
 
-            if (node.left != null) {
-                leftHeight = node.left.height;
-            }
+            updateNode(node);
 
-           
-            if (node.right != null) {
-                rightHeight = node.right.height;
+            if (balanced) {
+                Node subtreeRoot = rebalance(node);
+                if (subtreeRoot != node) {
+                    subtreeRoot.parent = parent;
+                    if (parent == null) {
+                        root = subtreeRoot;
+                    } else if (parent.left == node) {
+                        parent.left = subtreeRoot;
+                    } else {
+                        parent.right = subtreeRoot;
+                    }
+                    subtreeChanged(subtreeRoot);
+                }
             }
 
-            
-            if (leftHeight > rightHeight) {
-                node.height = leftHeight + 1;
-            } else {
-                node.height = rightHeight + 1;
-            }
+            node = parent;
+        }
+        if (TreeMetrics.ENABLED) {
+            TreeMetrics.recordUpdateHeight(steps);
+        }
+    }
 
-            
-            node = getParent(node);
+    /**
+    * Called after every structural change of this tree with the root of the smallest 
+    * subtree whose shape changed: the parent of an added node, the new root of a 
+    * rotated subtree, or the former parent of a removed node. Heights above the 
+    * changed subtree may not be updated yet. Does nothing by default, inheriting 
+    * classes override it to keep derived data in sync with the tree
+    * 
+    * @param node root of the changed subtree, null if the whole tree changed or is empty
+    */
+    protected void subtreeChanged(Node node) {
+    }
+
+    /**
+    * Recomputes the height and the subtree size of the specified node 
+    * from the values stored in its children
+    * 
+    * @param node the node whose height and size are recomputed
+    */
+    private void updateNode(Node node) {
+        int leftHeight = 0;
+        int rightHeight = 0;
+        int leftSize = 0;
+        int rightSize = 0;
+
+        if (node.left != null) {
+            leftHeight = node.left.height;
+            leftSize = node.left.size;
+        }
+
+        if (node.right != null) {
+            rightHeight = node.right.height;
+            rightSize = node.right.size;
         }
+
+        node.size = leftSize + rightSize + 1;
+
+        if (leftHeight > rightHeight) {
+            node.height = leftHeight + 1;
+        } else {
+            node.height = rightHeight + 1;
+        }
+
+        updateSummary(node);
     }
 
     /**
-    * Iterates through tree to parent node of the paramater node
-    *
-    * @param node node to get parent from
-    * @return parent parent node 
+    * Recomputes the summary of the specified node from its element and the summaries 
+    * of its children. Called for every new node and, bottom up, for every node whose 
+    * subtree changed, after its height and size are updated. Does nothing by default, 
+    * inheriting classes override it to keep a per-subtree value in Node.summary
+    * 
+    * @param node the node whose summary is recomputed
     */
-    public Node getParent(Node child){
-        if(root == null || root == child){
-            return null;
+    protected void updateSummary(Node node) {
+    }
+
+    /**
+    * Returns the primitive key of an element, see PrimitiveKeyed
+    * 
+    * @param data the element
+    * @return the key of data, or NO_KEY if it has none
+    */
+    private static long keyOf(Object data) {
+        if (data instanceof PrimitiveKeyed) {
+            return ((PrimitiveKeyed) data).primitiveKey();
         }
+        return PrimitiveKeyed.NO_KEY;
+    }
 
-        Node current = root;
-        while(current != null){
-            if(current.left == child || current.right == child){
-                return current;
+    /**
+    * Compares the element of node with data. If both have a primitive key the keys 
+    * are compared directly, which saves the call to compareTo in the loops that 
+    * walk down the tree
+    * 
+    * @param node the node whose element is compared
+    * @param data the element to compare with
+    * @param key the primitive key of data, or NO_KEY
+    * @return a value with the sign of node.data.compareTo(data)
+    */
+    private int compare(Node node, E data, long key) {
+        if (key != PrimitiveKeyed.NO_KEY && node.key != PrimitiveKeyed.NO_KEY) {
+            return Long.compareUnsigned(node.key, key);
+        }
+        return node.data.compareTo(data);
+    }
 
-            }
+    /**
+    * Returns the height of the specified subtree, zero for an empty subtree
+    * 
+    * @param node root of the subtree
+    * @return the height of the subtree
+    */
+    private int heightOf(Node node) {
+        if (node == null) {
+            return 0;
+        }
+        return node.height;
+    }
 
-            int compare = current.data.compareTo(child.data);
-            if(compare > 0){
-                current = current.left;
-            } else {
-                current = current.right;
+    /**
+    * Returns the number of elements in the specified subtree, zero for an empty subtree
+    * 
+    * @param node root of the subtree
+    * @return the number of nodes in the subtree
+    */
+    private int sizeOf(Node node) {
+        if (node == null) {
+            return 0;
+        }
+        return node.size;
+    }
+
+    /**
+    * Restores the AVL property at the specified node using single or double rotations
+    * The children of node are expected to be balanced with correct heights
+    * 
+    * @param node the node to rebalance
+    * @return the root of the rebalanced subtree that replaces node
+    */
+    private Node rebalance(Node node) {
+        int balance = heightOf(node.left) - heightOf(node.right);
+
+        if (balance > 1) { //left heavy
+            if (heightOf(node.left.left) < heightOf(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        } else if (balance < -1) { //right heavy
+            if (heightOf(node.right.right) < heightOf(node.right.left)) {
+                node.right = rotateRight(node.right);
             }
+            return rotateLeft(node);
         }
 
-        return null;
+        return node;
+    }
+
+    /**
+    * Rotates the subtree rooted at node to the left
+    * 
+    * @param node the root of the subtree, its right child becomes the new root
+    * @return the new root of the subtree
+    */
+    private Node rotateLeft(Node node) {
+        Node newRoot = node.right;
+        node.right = newRoot.left;
+        if (node.right != null) {
+            node.right.parent = node;
+        }
+        newRoot.left = node;
+        newRoot.parent = node.parent;
+        node.parent = newRoot;
+        updateNode(node);
+        updateNode(newRoot);
+        return newRoot;
+    }
+
+    /**
+    * Rotates the subtree rooted at node to the right
+    * 
+    * @param node the root of the subtree, its left child becomes the new root
+    * @return the new root of the subtree
+    */
+    private Node rotateRight(Node node) {
+        Node newRoot = node.left;
+        node.left = newRoot.right;
+        if (node.left != null) {
+            node.left.parent = node;
+        }
+        newRoot.right = node;
+        newRoot.parent = node.parent;
+        node.parent = newRoot;
+        updateNode(node);
+        updateNode(newRoot);
+        return newRoot;
+    }
+
+    /**
+    * Returns the parent node of the paramater node
+    *
+    * @param node node to get parent from
+    * @return parent parent node, or null if child is the root
+    */
+    public Node getParent(Node child){
+        return child.parent;
     }
 
     /**
@@ -187,10 +549,11 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
             throw new NullPointerException("Data can not equal null");
         }
 
+        long key = keyOf(data);
         Node current = root;
         Node ceilingNode = null; 
         while(current != null){
-            int compare = current.data.compareTo(data);
+            int compare = compare(current, data, key);
             if(compare == 0){
                 return current.data;
             } else if(compare > 0){
@@ -214,6 +577,8 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
     public void clear(){
         root = null;
         size = 0;
+        modCount++;
+        subtreeChanged(null);
     }
 
     /**
@@ -229,12 +594,18 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
         }
 
         E data = (E) o;
+        long key = keyOf(data);
 
+        int comparisons = 0;
         Node current = root; 
         while(current != null){
-            int compare = current.data.compareTo(data);
+            int compare = compare(current, data, key);
+            comparisons++;
 
             if(compare == 0){
+                if (TreeMetrics.ENABLED) {
+                    TreeMetrics.recordContains(comparisons);
+                }
                 return true;
             } else if(compare > 0){
                 current = current.left;
@@ -243,6 +614,9 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
             }
         }
 
+        if (TreeMetrics.ENABLED) {
+            TreeMetrics.recordContains(comparisons);
+        }
         return false;
     }
     
@@ -288,6 +662,235 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
         return true;
     }
 
+    /**
+    * Returns the hash code of this tree, the sum of the hash codes of its elements
+    * Trees that are equal have the same elements in the same order, so they have 
+    * the same hash code whatever their shape
+    *
+    * @return hash the hash code of this tree
+    */
+    @Override
+    public int hashCode(){
+        int hash = 0;
+        for (E element : this) {
+            hash += element.hashCode();
+        }
+        return hash;
+    }
+
+    /**
+    * Returns a new tree with the elements that are in this tree, the specified tree
+    * or both. Of two equal elements the one from this tree is kept. Merges the two
+    * sorted sequences in O(n + m) and builds the result balanced, so its shape does
+    * not depend on the shapes of the two trees. Neither tree is changed
+    * 
+    * There is no faster path for sizes that differ a lot: the result is a new tree of 
+    * all n + m elements, and the nodes of this tree cannot be shared with it because 
+    * they link to their parents and change in place. PersistentBST.union splits and 
+    * joins instead and shares every untouched subtree, in O(m log(n/m + 1))
+    *
+    * @param other the tree to merge with this tree
+    * @return union new tree of the same kind as this tree
+    * @throws NullPointerException if other is null
+    */
+    public BST<E> union(BST<E> other){
+        requireTree(other);
+        E[] merged = newArray(size + other.size);
+        int length = 0;
+        Iterator<E> mine = iterator();
+        Iterator<E> theirs = other.iterator();
+        E a = mine.hasNext() ? mine.next() : null;
+        E b = theirs.hasNext() ? theirs.next() : null;
+        while (a != null && b != null) {
+            int compare = a.compareTo(b);
+            if (compare <= 0) {
+                merged[length++] = a;
+                a = mine.hasNext() ? mine.next() : null;
+                if (compare == 0) {
+                    b = theirs.hasNext() ? theirs.next() : null;
+                }
+            } else {
+                merged[length++] = b;
+                b = theirs.hasNext() ? theirs.next() : null;
+            }
+        }
+        for (; a != null; a = mine.hasNext() ? mine.next() : null) {
+            merged[length++] = a;
+        }
+        for (; b != null; b = theirs.hasNext() ? theirs.next() : null) {
+            merged[length++] = b;
+        }
+
+        BST<E> union = newTree();
+        union.buildFrom(merged, length);
+        return union;
+    }
+
+    /**
+    * Returns a new tree with the elements of this tree that are also in the specified
+    * tree. Merges the two sorted sequences in O(n + m), unless one tree is so much
+    * smaller that looking each of its elements up in the other, in O(m log n), is
+    * faster. The result is built balanced and neither tree is changed
+    *
+    * @param other the tree to intersect with this tree
+    * @return intersection new tree of the same kind as this tree
+    * @throws NullPointerException if other is null
+    */
+    public BST<E> intersection(BST<E> other){
+        requireTree(other);
+        E[] common = newArray(Math.min(size, other.size));
+        int length = 0;
+        if (shouldProbe(size, other.size)) {
+            for (E element : this) {
+                if (other.contains(element)) {
+                    common[length++] = element;
+                }
+            }
+        } else if (shouldProbe(other.size, size)) {
+            //ceiling finds the element of this tree, which is the one to keep
+            for (E element : other) {
+                E match = ceiling(element);
+                if (match != null && match.compareTo(element) == 0) {
+                    common[length++] = match;
+                }
+            }
+        } else {
+            Iterator<E> mine = iterator();
+            Iterator<E> theirs = other.iterator();
+            E a = mine.hasNext() ? mine.next() : null;
+            E b = theirs.hasNext() ? theirs.next() : null;
+            while (a != null && b != null) {
+                int compare = a.compareTo(b);
+                if (compare == 0) {
+                    common[length++] = a;
+                }
+                if (compare <= 0) {
+                    a = mine.hasNext() ? mine.next() : null;
+                }
+                if (compare >= 0) {
+                    b = theirs.hasNext() ? theirs.next() : null;
+                }
+            }
+        }
+
+        BST<E> intersection = newTree();
+        intersection.buildFrom(common, length);
+        return intersection;
+    }
+
+    /**
+    * Returns a new tree with the elements of this tree that are not in the specified
+    * tree. Merges the two sorted sequences in O(n + m), or looks the elements of this
+    * tree up in the other one if this tree is much smaller. The result is built
+    * balanced and neither tree is changed. If the other tree is the much smaller one, 
+    * the result still needs O(n) new nodes; see union, and PersistentBST.difference 
+    * for the split/join variant that shares them
+    *
+    * @param other the tree whose elements are left out
+    * @return difference new tree of the same kind as this tree
+    * @throws NullPointerException if other is null
+    */
+    public BST<E> difference(BST<E> other){
+        requireTree(other);
+        E[] remaining = newArray(size);
+        int length = 0;
+        if (shouldProbe(size, other.size)) {
+            for (E element : this) {
+                if (!other.contains(element)) {
+                    remaining[length++] = element;
+                }
+            }
+        } else {
+            Iterator<E> theirs = other.iterator();
+            E b = theirs.hasNext() ? theirs.next() : null;
+            for (E a : this) {
+                while (b != null && b.compareTo(a) < 0) {
+                    b = theirs.hasNext() ? theirs.next() : null;
+                }
+                if (b == null || b.compareTo(a) != 0) {
+                    remaining[length++] = a;
+                }
+            }
+        }
+
+        BST<E> difference = newTree();
+        difference.buildFrom(remaining, length);
+        return difference;
+    }
+
+    /**
+    * Returns true if every element of this tree is also in the specified tree
+    * Merges the two sorted sequences in O(n + m), or looks the elements of this
+    * tree up in the other one if this tree is much smaller, and stops at the
+    * first element that is missing
+    *
+    * @param other the tree that may contain this tree
+    * @return true if this tree is a subset of other, false if not
+    * @throws NullPointerException if other is null
+    */
+    public boolean isSubsetOf(BST<E> other){
+        requireTree(other);
+        if (size > other.size) {
+            return false;
+        }
+        if (shouldProbe(size, other.size)) {
+            for (E element : this) {
+                if (!other.contains(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Iterator<E> theirs = other.iterator();
+        for (E a : this) {
+            int compare = -1;
+            while (compare < 0 && theirs.hasNext()) {
+                compare = theirs.next().compareTo(a);
+            }
+            if (compare != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+    * Returns true if looking up each of the small elements in the large tree, 
+    * about small * log2(large) comparisons, is cheaper than merging both
+    * sequences with small + large steps
+    *
+    * @param small number of elements that are looked up
+    * @param large number of elements in the tree they are looked up in
+    * @return true if the lookups are cheaper than the merge
+    */
+    private static boolean shouldProbe(int small, int large){
+        int depth = 32 - Integer.numberOfLeadingZeros(large);
+        return (long) small * depth < (long) small + large;
+    }
+
+    /**
+    * Checks the argument of a set operation
+    *
+    * @param other the other tree
+    * @throws NullPointerException if other is null
+    */
+    private static void requireTree(BST<?> other){
+        if (other == null) {
+            throw new NullPointerException("Tree cannot be null");
+        }
+    }
+
+    /**
+    * Returns a new empty tree of the same kind as this one, for the results of
+    * union, intersection and difference. Subclasses return their own class
+    *
+    * @return tree a new empty tree with the same balancing mode
+    */
+    protected BST<E> newTree(){
+        return new BST<>(balanced);
+    }
+
     /**
     * Returns the first (lowest) element currently in this tree
     *
@@ -324,14 +927,15 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
             return null;
         }
 
+        long key = keyOf(data);
         Node current = root;
         Node floor = null;
         while(current != null){
-            int compare = ((Comparable<E>) data).compareTo(current.data);
+            int compare = compare(current, data, key);
 
             if(compare == 0) {
                 return current.data;
-            } else if(compare < 0){
+            } else if(compare > 0){
                 current = current.left;
             } else{
                 floor = current;
@@ -350,7 +954,7 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
     * Returns the element at the specified position in this tree
     *
     * @param index index of the element to return
-    * @return currentElement the element at the specified position in this tree
+    * @return the element at the specified position in this tree
     * @throws IndexOutOfBoundsException if the index is out of range
     */
     public E get(int index){
@@ -358,19 +962,85 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
             throw new IndexOutOfBoundsException("This index is out of rage");
         }
 
-        Iterator<E> iterator = this.iterator();
-        int currentIndex = 0;
+        Node current = root;
+        while (current != null) {
+            int leftSize = sizeOf(current.left);
+            if (index < leftSize) {
+                current = current.left;
+            } else if (index == leftSize) {
+                return current.data;
+            } else {
+                index -= leftSize + 1;
+                current = current.right;
+            }
+        }
+
+        //we should never get to this line 
+        return null;
+    }
 
-        while(iterator.hasNext()){
-            E currentElement = iterator.next();
+    /**
+    * Returns the number of elements in this tree strictly less than the given element
+    * This is also the index the element has, or would have, in ascending order
+    *
+    * @param e the value to match
+    * @return the number of elements less than e
+    * @throws NullPointerException if the specified element is null
+    */
+    public int rank(E e){
+        if(e == null){
+            throw new NullPointerException("Specified element can not be null");
+        }
 
-            if(currentIndex == index){
-                return currentElement;
+        return countBelow(e, false);
+    }
+
+    /**
+    * Returns the number of elements in this tree that are greater than or equal 
+    * to lo and less than or equal to hi
+    *
+    * @param lo the lowest element of the range
+    * @param hi the highest element of the range
+    * @return the number of elements in the range, zero if lo is greater than hi
+    * @throws NullPointerException if either element is null
+    */
+    public int countInRange(E lo, E hi){
+        if(lo == null || hi == null){
+            throw new NullPointerException("Specified element can not be null");
+        }
+
+        if(lo.compareTo(hi) > 0){
+            return 0;
+        }
+
+        return countBelow(hi, true) - countBelow(lo, false);
+    }
+
+    /**
+    * Counts the elements less than (or equal to, if inclusive) the given element
+    * by a single descent that adds up the sizes of the skipped left subtrees
+    *
+    * @param e the value to match
+    * @param inclusive true to count an element equal to e as well
+    * @return the number of matching elements
+    */
+    private int countBelow(E e, boolean inclusive){
+        int count = 0;
+        long key = keyOf(e);
+        Node current = root;
+        while(current != null){
+            int compare = compare(current, e, key);
+            if(compare < 0 || (compare == 0 && inclusive)){
+                count += sizeOf(current.left) + 1;
+                current = current.right;
+            } else if(compare > 0){
+                current = current.left;
+            } else {
+                return count + sizeOf(current.left);
             }
-            currentIndex++;
         }
-        
-        return null;
+
+        return count;
     }
 
     /**
@@ -403,10 +1073,11 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
             return null;
         }
 
+        long key = keyOf(e);
         Node current = root;
         Node element = null;
         while(current != null){
-            int compare = current.data.compareTo(e);
+            int compare = compare(current, e, key);
             if(compare > 0){
                 element = current;
                 current = current.left;
@@ -437,33 +1108,13 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
 
     /**
     * Returns an iterator over the elements in this tree in ascending order
+    * The iterator walks the tree lazily and supports remove
     *
-    * @return ArrayIterator array of elements in ascending order
+    * @return an iterator over the elements in ascending order
     */
     @Override
     public Iterator<E> iterator() {
-        Object[] elements = new Object[size];
-        int[] index = new int[] {0};
-        inOrderTraversal(root, elements, index);
-        return new ArrayIterator(elements, size);
-    }
-
-    /**
-    * Performs an in-order traversal of the tree, visiting nodes in ascending order,
-    * and fills the specified array with the elements in this order
-    * 
-    * @param node the current node being visited
-    * @param elements the array to store the elements during traversal
-    * @param index a single-element array used to track the current index in the elements array
-    */
-    private void inOrderTraversal(Node node, Object[] elements, int[] index) {
-        if (node == null) {
-            return;
-        }
-        inOrderTraversal(node.left, elements, index);
-        elements[index[0]] = node.data;
-        index[0]++;
-        inOrderTraversal(node.right, elements, index);
+        return new InOrderIterator();
     }
 
     /**
@@ -472,47 +1123,16 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
     * @return an iterator over the elements of the tree in pre-order
     */
     public Iterator<E> preorderIterator() {
-        E[] elements = (E[]) new Object[size];
-        int[] index = new int[] {0};
-        preOrderTraversal(root, elements, index);
-        return new ArrayIterator(elements, size);
+        return new PreOrderIterator();
     }
 
     /**
-    * Performs a pre-order traversal of the tree and 
-    * fills the specified array with elements.
+    * Creates and returns an iterator for traversing the tree in post-order
     * 
-    * @param node the current node being visited
-    * @param elements the array to store the elements during traversal
-    * @param index a single element array used to track the current index in the elements array
+    * @return an iterator over the elements of the tree in post-order
     */
-    private void preOrderTraversal(Node node, E[] elements, int[] index) {
-        if (node == null) {
-            return;
-        }
-        elements[index[0]] = node.data;
-        index[0]++;
-        preOrderTraversal(node.left, elements, index);
-        preOrderTraversal(node.right, elements, index);
-    }
-
-    // Post-order Iterator
     public Iterator<E> postorderIterator() {
-        E[] elements = (E[]) new Object[size];
-        int[] index = new int[] {0};
-        postOrderTraversal(root, elements, index);
-        return new ArrayIterator(elements, size);
-    }
-
-    // Helper: Post-order Traversal
-    private void postOrderTraversal(Node node, E[] elements, int[] index) {
-        if (node == null) {
-            return;
-        }
-        postOrderTraversal(node.left, elements, index);
-        postOrderTraversal(node.right, elements, index);
-        elements[index[0]] = node.data;
-        index[0]++;
+        return new PostOrderIterator();
     }
 
     /**
@@ -552,10 +1172,11 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
             return null;
         }
 
+        long key = keyOf(e);
         Node current = root;
         Node element = null;
         while(current != null){
-            int compare = current.data.compareTo(e);
+            int compare = compare(current, e, key);
             if(compare > 0){
                 current = current.left;
             } else{
@@ -585,76 +1206,104 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
             throw new NullPointerException("Specified element can not be null");
         }
 
-        if(root == o){
-
-        }
-
+        E data = (E) o;
+        long key = keyOf(data);
         Node current = root;
-        Node parent = null;
         while(current != null){
-            int compare = current.data.compareTo((E) o);
+            int compare = compare(current, data, key);
             
             if (compare > 0) {
-                parent = current;
                 current = current.left;
             } else if (compare < 0) {
-                parent = current;
                 current = current.right;
             } else {
-                //Removing leaf node or root if only element
-                if (current.left == null && current.right == null) {
-                    if (parent == null) {
-                        root = null;
-                    } else if (parent.left == current) {
-                        parent.left = null;
-                    } else {
-                        parent.right = null;
-                    }
-                }
+                removeNode(current);
+                return true;
+            }
+        }
 
-                //Node has one child
-                else if (current.left == null) {
-                    if (parent == null) {
-                        root = current.right;
-                    } else if (parent.left == current) {
-                        parent.left = current.right;
-                    } else {
-                        parent.right = current.right;
-                    }
-                } else if (current.right == null) {
-                    if (parent == null) {
-                        root = current.left;
-                    } else if (parent.left == current) {
-                        parent.left = current.left;
-                    } else {
-                        parent.right = current.left;
-                    }
-                } 
-            
-                //Node has two children
-                else {
-                    Node minNodeParent = current;
-                    Node minNode = current.right;
-                    while (minNode.left != null) {
-                        minNodeParent = minNode;
-                        minNode = minNode.left;
-                    }
+        return false;
+   }
 
-                    current.data = minNode.data;
+   /**
+   * Unlinks the specified node from this tree. A node with two children is replaced 
+   * by the node holding its successor, so every other node keeps its element 
+   * and iterators positioned on them stay valid
+   *
+   * @param node the node to remove
+   */
+   private void removeNode(Node node){
+        Node top = node.parent;
+        Node fixFrom;
+
+        //Removing leaf node or node with one child
+        if (node.left == null || node.right == null) {
+            Node child = node.left;
+            if (child == null) {
+                child = node.right;
+            }
+            replaceChild(node, child);
+            fixFrom = node.parent;
+        }
 
-                    if (minNodeParent.left == minNode) {
-                        minNodeParent.left = minNode.right;
-                    } else {
-                    minNodeParent.right = minNode.right;
-                    }
-                }
+        //Node has two children
+        else {
+            Node minNode = node.right;
+            while (minNode.left != null) {
+                minNode = minNode.left;
+            }
 
-                size--;
-                return true;
+            if (minNode == node.right) {
+                fixFrom = minNode;
+            } else {
+                //detach the successor and let it take over the right subtree
+                fixFrom = minNode.parent;
+                fixFrom.left = minNode.right;
+                if (minNode.right != null) {
+                    minNode.right.parent = fixFrom;
+                }
+                minNode.right = node.right;
+                minNode.right.parent = minNode;
             }
+
+            minNode.left = node.left;
+            minNode.left.parent = minNode;
+            replaceChild(node, minNode);
         }
 
-        return false;
+        node.parent = null;
+        node.left = null;
+        node.right = null;
+
+        size--;
+        modCount++;
+        if (top == null) {
+            subtreeChanged(root);
+        } else {
+            subtreeChanged(top);
+        }
+        updateHeight(fixFrom);
+   }
+
+   /**
+   * Puts replacement in the place of node under node's parent, or at the root
+   *
+   * @param node the node being replaced
+   * @param replacement the node that takes its place, may be null
+   */
+   private void replaceChild(Node node, Node replacement){
+        Node parent = node.parent;
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == node) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+
+        if (replacement != null) {
+            replacement.parent = parent;
+        }
    }
    
     /**
@@ -676,16 +1325,16 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
     */
     @Override
     public String toString() {
-        String result = "[";
+        StringBuilder result = new StringBuilder("[");
         Iterator<E> iterator = this.iterator();
         while (iterator.hasNext()) {
-            result += iterator.next();
+            result.append(iterator.next());
             if (iterator.hasNext()) {
-                result += ", ";
+                result.append(", ");
             }
         }
-        result += "]";
-        return result;
+        result.append("]");
+        return result.toString();
     }
 
 
@@ -702,82 +1351,361 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
 
     //uses preorder traversal to display the tree 
     //WARNING: will not work if the data.toString returns more than one line 
-    //WARNING: may not work well for very large trees 
     private void toStringTree( StringBuffer sb, Node node, int level ) {
-        //display the node 
+        if (node == null) {
+            indent(sb, level);
+            sb.append( "->\n"); 
+            return;
+        }
+
+        walk(node, new Visitor() {
+            @Override
+            protected boolean enter(Node current, int depth) {
+                //display the node, then the empty left subtree if there is one 
+                indent(sb, level + depth);
+                sb.append( current.data + "\n"); 
+                if (current.left == null) {
+                    indent(sb, level + depth + 1);
+                    sb.append( "->\n"); 
+                }
+                return true;
+            }
+
+            @Override
+            protected void visit(Node current, int depth) {
+                //the left subtree is done, display the empty right subtree if there is one 
+                if (current.right == null) {
+                    indent(sb, level + depth + 1);
+                    sb.append( "->\n"); 
+                }
+            }
+        });
+    }
+
+    //appends the branch that leads to a node on the given level
+    private void indent( StringBuffer sb, int level ) {
         if (level > 0 ) {
             for (int i = 0; i < level-1; i++) {
                 sb.append("   ");
             }
             sb.append("|--");
         }
-        if (node == null) {
-            sb.append( "->\n"); 
+    }
+
+    /**
+    * Walks the subtree rooted at start in depth-first order and reports every 
+    * node to the visitor. The tree must not be modified during the walk
+    * 
+    * @param start the root of the subtree to walk, may be null
+    * @param visitor the visitor to report the nodes to
+    */
+    protected void walk(Node start, Visitor visitor) {
+        if (start != null) {
+            walk(start, visitor, 0);
+        }
+    }
+
+    /**
+    * Walks a subtree by recursion, which is the fastest way for the levels near 
+    * the top. Subtrees below MAX_RECURSION levels are handed to walkIteratively, 
+    * so the call stack never grows beyond that no matter how deep the tree is
+    * 
+    * @param node the root of the subtree to walk
+    * @param visitor the visitor to report the nodes to
+    * @param depth the depth of node below the start of the walk
+    */
+    private void walk(Node node, Visitor visitor, int depth) {
+        if (depth == MAX_RECURSION) {
+            walkIteratively(node, visitor, depth);
             return;
         }
-        else {
-            sb.append( node.data + "\n"); 
+
+        if (visitor.enter(node, depth)) {
+            if (node.left != null) {
+                walk(node.left, visitor, depth + 1);
+            }
+            visitor.visit(node, depth);
+            if (node.right != null) {
+                walk(node.right, visitor, depth + 1);
+            }
+        }
+        visitor.leave(node, depth);
+    }
+
+    /**
+    * Walks a subtree without recursion by following child and parent links. 
+    * Needs no stack at all and handles subtrees of any height
+    * 
+    * @param start the root of the subtree to walk
+    * @param visitor the visitor to report the nodes to
+    * @param depth the depth of start below the start of the walk
+    */
+    private void walkIteratively(Node start, Visitor visitor, int depth) {
+        Node node = start;
+        Node previous = start.parent;
+        long parentSteps = 0;
+        while (true) {
+            if (previous == node.parent) { 
+                //arrived from above
+                if (visitor.enter(node, depth)) {
+                    if (node.left != null) {
+                        previous = node;
+                        node = node.left;
+                        depth++;
+                        continue;
+                    }
+                    visitor.visit(node, depth);
+                    if (node.right != null) {
+                        previous = node;
+                        node = node.right;
+                        depth++;
+                        continue;
+                    }
+                }
+            } else if (previous == node.left) { 
+                //back from the left subtree
+                visitor.visit(node, depth);
+                if (node.right != null) {
+                    previous = node;
+                    node = node.right;
+                    depth++;
+                    continue;
+                }
+            }
+
+            //done with this node and its subtrees
+            visitor.leave(node, depth);
+            if (node == start) {
+                if (TreeMetrics.ENABLED) {
+                    TreeMetrics.recordParentWalk(parentSteps);
+                }
+                return;
+            }
+            previous = node;
+            node = node.parent;
+            parentSteps++;
+            depth--;
+        }
+    }
+
+    /**
+    * Receives the nodes of a walk. For every node the walk calls enter first; 
+    * if enter returns true it walks the left subtree, calls visit and walks the 
+    * right subtree. It always ends with a call to leave. Depths are counted 
+    * from the node the walk started at
+    */
+    protected abstract class Visitor {
+        /**
+        * Called when the walk reaches a node
+        * 
+        * @param node the node reached
+        * @param depth the depth of node below the start of the walk
+        * @return true to walk the subtrees of node, false to skip them
+        */
+        protected boolean enter(Node node, int depth) {
+            return true;
+        }
+
+        /**
+        * Called between the left and the right subtree of a node (in-order)
+        * 
+        * @param node the current node
+        * @param depth the depth of node below the start of the walk
+        */
+        protected void visit(Node node, int depth) {
         }
 
-        //display the left subtree 
-        toStringTree(sb, node.left, level+1); 
-        //display the right subtree 
-        toStringTree(sb, node.right, level+1); 
+        /**
+        * Called when the walk is done with a node and its subtrees
+        * 
+        * @param node the current node
+        * @param depth the depth of node below the start of the walk
+        */
+        protected void leave(Node node, int depth) {
+        }
     }
 
 
     /**
-    * A custom iterator for iterating over an array of elements
-    * This iterator is designed to work specifically with an array representation of 
-    * the elements of the BST
-    * 
-    * @param <E> the type of elements being iterated over, matching the type of the BST.
+    * Base class of the tree iterators. Walks the tree one node at a time 
+    * by following child and parent links, so creating an iterator costs O(h) 
+    * and no elements are copied. Fails fast with a ConcurrentModificationException 
+    * if the tree is structurally modified other than through the iterator
     */
-    private class ArrayIterator implements Iterator<E> {
-        private final Object[] elements;
-        private final int size;
-        private int index;
+    private abstract class TreeIterator implements Iterator<E> {
+        protected Node next;
+        protected Node lastReturned;
+        protected int expectedModCount;
 
         /**
-        * Constructs an ArrayIterator with the specified array and size
+        * Constructs an iterator that starts at the specified node
         * 
-        * @param elements the array containing the elements to iterate over
-        * @param size the number of valid elements in the array
+        * @param first the first node to return, or null if there is none
         */
-        public ArrayIterator(Object[] elements, int size) { 
-            this.elements = elements;
-            this.size = size;
-            this.index = 0;
+        TreeIterator(Node first) {
+            this.next = first;
+            this.expectedModCount = modCount;
         }
 
+        /**
+        * Returns the node that follows the specified node in this traversal order
+        * 
+        * @param node the current node
+        * @return the next node, or null if node is the last one
+        */
+        protected abstract Node successor(Node node);
+
         /**
         * Checks if there are more elements to iterate over
         * 
-        * @return true if the iterator has not yet reached the end of the valid elements
+        * @return true if the iterator has not yet reached the end of the traversal
         */
         @Override
         public boolean hasNext() {
-            if(index < size){
-                return true;
-            }
-            return false;
+            return next != null;
         }
 
         /**
         * Returns the next element in the iteration.
         * 
-        * @return the next element in the array.
-        * @throws NoSuchElementException if there are no more elements to return.
+        * @return the next element in the traversal
+        * @throws NoSuchElementException if there are no more elements to return
+        * @throws ConcurrentModificationException if the tree was modified
         */
         @Override
         public E next() {
-            if(!hasNext()){
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
                 throw new NoSuchElementException("No more elements in the iterator.");
             }
-            return (E) elements[index++];
+            lastReturned = next;
+            next = successor(next);
+            return lastReturned.data;
         }
     }
 
+    /**
+    * Iterator over the elements in ascending order
+    */
+    private class InOrderIterator extends TreeIterator {
+        InOrderIterator() {
+            super(root == null ? null : leftmost(root));
+        }
+
+        @Override
+        protected Node successor(Node node) {
+            if (node.right != null) {
+                return leftmost(node.right);
+            }
+            Node parent = node.parent;
+            while (parent != null && parent.right == node) {
+                node = parent;
+                parent = parent.parent;
+            }
+            return parent;
+        }
+
+        /**
+        * Removes the last element returned by this iterator from the tree
+        * 
+        * @throws IllegalStateException if next has not been called since the last remove
+        * @throws ConcurrentModificationException if the tree was modified
+        */
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException("next has not been called");
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            //removal relinks nodes but never moves elements, so next stays in place
+            removeNode(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+    * Iterator over the elements in pre-order. Does not support remove, 
+    * because removal can rotate unvisited nodes above visited ones
+    */
+    private class PreOrderIterator extends TreeIterator {
+        PreOrderIterator() {
+            super(root);
+        }
+
+        @Override
+        protected Node successor(Node node) {
+            if (node.left != null) {
+                return node.left;
+            }
+            if (node.right != null) {
+                return node.right;
+            }
+            Node parent = node.parent;
+            while (parent != null) {
+                if (parent.left == node && parent.right != null) {
+                    return parent.right;
+                }
+                node = parent;
+                parent = parent.parent;
+            }
+            return null;
+        }
+    }
+
+    /**
+    * Iterator over the elements in post-order. Does not support remove, 
+    * because removal can rotate unvisited nodes above visited ones
+    */
+    private class PostOrderIterator extends TreeIterator {
+        PostOrderIterator() {
+            super(root == null ? null : firstPostorder(root));
+        }
+
+        @Override
+        protected Node successor(Node node) {
+            Node parent = node.parent;
+            if (parent != null && parent.left == node && parent.right != null) {
+                return firstPostorder(parent.right);
+            }
+            return parent;
+        }
+    }
+
+    /**
+    * Returns the node with the lowest element in a subtree
+    * 
+    * @param node root of the subtree
+    * @return the leftmost node of the subtree
+    */
+    private Node leftmost(Node node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    /**
+    * Returns the first node of the post-order traversal of a subtree
+    * 
+    * @param node root of the subtree
+    * @return the deepest node reached by preferring left children
+    */
+    private Node firstPostorder(Node node) {
+        while (node.left != null || node.right != null) {
+            if (node.left != null) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return node;
+    }
+
 
     /* 
      * Node class for this BST 
@@ -791,11 +1719,18 @@ public class BST<E extends Comparable<E>> implements Iterable<E>{
         E data;
         Node  left;
         Node  right;
+        Node  parent;
         int height;
+        int size;  //number of nodes in the subtree rooted at this node
+        int summary; //per-subtree value maintained by updateSummary
+        final long key; //primitive key of data, or NO_KEY, see PrimitiveKeyed
 
         public Node ( E data ) {
             this.data = data;
+            this.key = keyOf(data);
             this.height = 1;
+            this.size = 1;
+            updateSummary(this);
         }
 
         public int compareTo(E other){
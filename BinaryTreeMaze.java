@@ -1,29 +1,119 @@
 package project5;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
 * Class that reads file input and creates maze from given input
-* Finds all available paths and prints them, then closes Scanner
+* Finds all available paths and prints them
 *
 * @author Carsten Kaiser
 */
 public class BinaryTreeMaze{
+    //suffix of the cache key under which the malformed lines of a file are kept
+    private static final String WARNINGS = "-warnings";
+
     public static void main(String[] args){
         /**
         * Code borrowed from project 3 reading input file
         */
+        //reads the optional flags that come before the file name
+        boolean balanced = false;
+        boolean stats = false;
+        boolean bulk = false;
+        boolean compact = false;
+        boolean snapshot = false;
+        boolean count = false;
+        boolean exits = false;
+        File saveFile = null;
+        File batchDirectory = null;
+        File cacheDirectory = null;
+        int fileArg = 0;
+        while (fileArg < args.length && args[fileArg].startsWith("--")) {
+            if (args[fileArg].equals("--balanced")) {
+                balanced = true;
+            } else if (args[fileArg].equals("--bulk")) {
+                bulk = true;
+            } else if (args[fileArg].equals("--compact")) {
+                compact = true;
+            } else if (args[fileArg].equals("--stats")) {
+                stats = true;
+            } else if (args[fileArg].equals("--count")) {
+                count = true;
+            } else if (args[fileArg].equals("--exits")) {
+                exits = true;
+            } else if (args[fileArg].equals("--snapshot")) {
+                snapshot = true;
+            } else if (args[fileArg].equals("--save") && fileArg + 1 < args.length) {
+                fileArg++;
+                saveFile = new File(args[fileArg]);
+            } else if (args[fileArg].equals("--batch") && fileArg + 1 < args.length) {
+                fileArg++;
+                batchDirectory = new File(args[fileArg]);
+            } else if (args[fileArg].equals("--cache") && fileArg + 1 < args.length) {
+                fileArg++;
+                cacheDirectory = new File(args[fileArg]);
+            } else {
+                System.err.println("Usage Error: unknown option "+args[fileArg]+"\n");
+                System.exit(1);
+            }
+            fileArg++;
+        }
+
+        if (compact && (balanced || bulk)) {
+            System.err.println("Usage Error: --compact can not be combined with --balanced or --bulk\n");
+            System.exit(1);
+        }
+        if (snapshot && (compact || balanced || bulk || saveFile != null)) {
+            System.err.println("Usage Error: --snapshot can not be combined with other options than --stats\n");
+            System.exit(1);
+        }
+        if (count && exits) {
+            System.err.println("Usage Error: --count can not be combined with --exits\n");
+            System.exit(1);
+        }
+        if ((count || exits) && (compact || snapshot)) {
+            System.err.println("Usage Error: --count and --exits can not be combined with --compact or --snapshot\n");
+            System.exit(1);
+        }
+        if (compact && saveFile != null) {
+            System.err.println("Usage Error: --compact can not be combined with --save\n");
+            System.exit(1);
+        }
+
+        if (batchDirectory != null && (compact || snapshot || count || exits || saveFile != null)) {
+            System.err.println("Usage Error: --batch can only be combined with --balanced, --bulk and --stats\n");
+            System.exit(1);
+        }
+
+        if (cacheDirectory != null && (compact || snapshot || count || exits || batchDirectory != null)) {
+            System.err.println("Usage Error: --cache can not be combined with --compact, --snapshot, --count, --exits or --batch\n");
+            System.exit(1);
+        }
+
         //verifies that the command line argument exists
-        if (args.length == 0 ) {
+        if (fileArg >= args.length ) {
             System.err.println("Usage Error: the program expects file name as an argument.\n");
             System.exit(1);
         }
 
+        //many files are solved by the batch pipeline, each like a single run
+        if (batchDirectory != null) {
+            runBatch(batchDirectory, balanced, bulk, stats,
+                     Arrays.asList(args).subList(fileArg, args.length));
+            return;
+        }
+
         //verifies that command line argument contains a name of an existing file
-        File mazeFile = new File(args[0]);
+        File mazeFile = new File(args[fileArg]);
         if (!mazeFile.exists()) {
             System.err.println("Error: the file "+mazeFile.getAbsolutePath()+" does not exist.\n");
             System.exit(1);
@@ -34,53 +124,190 @@ public class BinaryTreeMaze{
             System.exit(1);
         }
 
-        //open the file for reading
-        Scanner fileScanner = null;
+        //a snapshot is mapped and searched directly, without building a maze
+        if (snapshot) {
+            long start = System.nanoTime();
+            MazeSnapshot mapped = null;
+            try {
+                mapped = Maze.open(mazeFile.toPath());
+            } catch (IOException e) {
+                System.err.println("Error: "+e.getMessage()+"\n");
+                System.exit(1);
+            }
+            if (stats) {
+                System.err.printf("Opened snapshot (%d nodes) in %.3f ms%n",
+                                  mapped.size(), (System.nanoTime() - start) / 1e6);
+            }
+            mapped.printAvailablePaths();
+            return;
+        }
+
+        //with a cache directory the output for a file that was seen before in the same
+        //mode is printed without parsing the file or building the maze
+        PathCache cache = null;
+        String cacheKey = null;
+        boolean warned = false; //true once the cached malformed lines are printed
+        String mode = balanced ? "balanced" : bulk ? "bulk" : "insertion";
+        if (cacheDirectory != null) {
+            cache = new PathCache(0, cacheDirectory.toPath());
+            try {
+                cacheKey = PathCache.fileKey(mazeFile.toPath(), mode);
+            } catch (IOException e) {
+                System.err.println("Error: the file "+mazeFile.getAbsolutePath()+
+                                   " cannot be opened for reading.\n");
+                System.exit(1);
+            }
+            //a maze that is saved has to be built anyway; the paths are copied from
+            //the cache file in chunks, so a large result is never read into memory
+            byte[] warnings = saveFile == null ? cache.get(cacheKey + WARNINGS) : null;
+            if (warnings != null) {
+                System.err.write(warnings, 0, warnings.length);
+                System.err.flush();
+                warned = true;
+                try {
+                    if (cache.printCached(cacheKey, System.out)) {
+                        if (stats) {
+                            System.err.println("Cache: "+cache);
+                        }
+                        return;
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error: the paths cannot be written.\n");
+                    System.exit(1);
+                }
+            }
+        }
+
+        //set up the metrics before anything is timed
+        if (MazeMetrics.ENABLED) {
+            MazeMetrics.get();
+        }
+
+        //create maze object
+        Maze maze = new Maze(balanced);
+        CompactMaze compactMaze = new CompactMaze();
 
+        //reading and saving maze data; with a cache the malformed lines are kept for later runs
+        ByteArrayOutputStream warnings = new ByteArrayOutputStream();
+        MazeLoader loader = new MazeLoader(cache == null ? System.err : new PrintStream(warnings, true));
         try {
-            fileScanner = new Scanner (mazeFile);
-        } catch (FileNotFoundException e) {
+            if (compact) {
+                loader.load(mazeFile.toPath(), compactMaze::add);
+            } else if (bulk) {
+                //collect the nodes first, then build the maze balanced in one pass
+                List<MazeNode> nodes = new ArrayList<>();
+                loader.load(mazeFile.toPath(), nodes::add);
+                maze.load(nodes, false);
+            } else {
+                loader.load(mazeFile.toPath(), maze);
+            }
+        } catch (IOException e) {
             System.err.println("Error: the file "+mazeFile.getAbsolutePath()+
                                " cannot be opened for reading.\n");
             System.exit(1);
         }
+        if (cache != null && !warned) {
+            System.err.write(warnings.toByteArray(), 0, warnings.size());
+            System.err.flush();
+        }
 
-        //create maze object
-        Maze maze = new Maze();
-
-        //reading and saving maze data
-        String line;
-        Scanner lineScanner;
-        String label;
-        int lifePoints;
-        MazeNode node;
-
-        while (fileScanner.hasNextLine()) {
-            line = fileScanner.nextLine();
-            lineScanner = new Scanner(line);
+        if (stats) {
+            System.err.printf("Read %d lines (%d nodes, %d malformed, %d skipped) in %.3f ms, %.1f MB/s%n",
+                              loader.getLines(), loader.getNodes(), loader.getMalformedLines(),
+                              loader.getSkippedLines(), loader.getElapsedNanos() / 1e6,
+                              loader.getMegabytesPerSecond());
+        }
 
+        if (saveFile != null) {
             try {
-            label = lineScanner.next().trim(); //get label
-            lifePoints = Integer.parseInt(lineScanner.next().trim()); //get life point
-            
-            node = new MazeNode(label, lifePoints);
-            
-            maze.add(node);
-    
+                maze.save(saveFile.toPath());
+            } catch (IOException e) {
+                System.err.println("Error: the file "+saveFile.getAbsolutePath()+
+                                   " cannot be opened for writing.\n");
+                System.exit(1);
             }
-            catch (NoSuchElementException ex ) {
-                //caused by an incomplete or miss-formatted line in the input file
-                System.err.println(line);
-                continue;
+        }
+
+        if (count) {
+            System.out.println(maze.countAvailablePaths());
+        } else if (exits) {
+            //one line per exit: the label and the life points left there
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+            maze.availableExits((exit, lifePoints) -> {
+                out.write(exit.getLabel());
+                out.write(' ');
+                out.println(lifePoints);
+            });
+            out.flush();
+        } else if (compact) {
+            compactMaze.printAvailablePaths();
+        } else if (cache != null) {
+            try {
+                //a file that changed while it was read is not cached under either contents
+                if (cacheKey.equals(PathCache.fileKey(mazeFile.toPath(), mode))) {
+                    cache.store(cacheKey + WARNINGS, warnings.toByteArray());
+                    cache.printAvailablePaths(cacheKey, maze, System.out);
+                } else {
+                    maze.printAvailablePaths();
+                }
+            } catch (IOException e) {
+                System.err.println("Error: the paths cannot be written.\n");
+                System.exit(1);
             }
-            catch (IllegalArgumentException ex ) {
-                //ignore this exception and skip to the next line
+            if (stats) {
+                System.err.println("Cache: "+cache);
             }
+        } else {
+            maze.printAvailablePaths();
         }
 
+        if (stats && MazeMetrics.ENABLED) {
+            System.err.println("Metrics: "+MazeMetrics.get());
+        }
+    }
 
-        maze.printAvailablePaths();
+    /**
+    * Solves every input file with MazeBatch and reports the files that failed
+    * Exits with status 1 if any file failed
+    *
+    * @param directory the directory for the result files
+    * @param balanced true to build balanced mazes
+    * @param bulk true to bulk-build the mazes
+    * @param stats true to print the time of every file
+    * @param arguments names of the input files and directories
+    */
+    private static void runBatch(File directory, boolean balanced, boolean bulk, boolean stats,
+                                 List<String> arguments) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        MazeBatch batch = new MazeBatch(directory.toPath(), balanced, bulk, cores, 2 * cores);
+        List<MazeBatch.Result> results = null;
+        long start = System.nanoTime();
+        try {
+            results = batch.run(MazeBatch.inputFiles(arguments));
+        } catch (IOException e) {
+            System.err.println("Error: "+e.getMessage()+"\n");
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
 
-        fileScanner.close();
+        int failed = 0;
+        for (MazeBatch.Result result : results) {
+            if (!result.isSolved()) {
+                failed++;
+                System.err.println("Error: "+result.getInput()+": "+result.getError());
+            } else if (stats) {
+                System.err.printf("%s: %d paths in %.3f ms%n", result.getInput(),
+                                  result.getExits(), result.getElapsedNanos() / 1e6);
+            }
+        }
+        if (stats) {
+            System.err.printf("Solved %d of %d files in %.3f ms%n", results.size() - failed,
+                              results.size(), (System.nanoTime() - start) / 1e6);
+        }
+        if (failed > 0) {
+            System.exit(1);
+        }
     }
 }
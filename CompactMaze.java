@@ -0,0 +1,305 @@
+package project5;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Class that represents a Maze stored in parallel primitive arrays instead of objects
+ * Node i has its children at left[i] and right[i] (-1 for none), its life points at 
+ * lifePoints[i] and its label as UTF-8 bytes at labelStart[i]..labelStart[i + 1] in 
+ * one packed byte array. Nodes are added in insertion order like in Maze, so both 
+ * give the same paths for the same input. Before a search every node also gets the 
+ * height and the summary of its subtree, so the search can skip subtrees like Maze 
+ * does (see PathSearch). A node costs 24 bytes plus its label, and the search runs 
+ * over int arrays instead of chasing object references
+ *
+ * Labels are compared byte by byte, which orders them by code point. That is the 
+ * same order as String.compareTo except for labels that mix characters outside the 
+ * Basic Multilingual Plane with characters from U+E000 to U+FFFF
+ *
+ * @author Carsten Kaiser
+ */
+public class CompactMaze {
+    private static final int NONE = PathSearch.NONE;
+
+    private int[] left;
+    private int[] right;
+    private int[] lifePoints;
+    private int[] labelStart; //labelStart[size] is where the next label goes
+    private byte[] labels;
+    private int[] heights;
+    private int[] summaries;
+    private int size;
+    private int height;
+    private boolean summarized; //true while heights and summaries are up to date
+
+    /**
+     * Constructs an empty maze
+     */
+    public CompactMaze() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty maze with room for the given number of nodes
+     *
+     * @param expectedNodes the number of nodes the maze is expected to hold
+     */
+    public CompactMaze(int expectedNodes) {
+        int capacity = Math.max(expectedNodes, 1);
+        left = new int[capacity];
+        right = new int[capacity];
+        lifePoints = new int[capacity];
+        labelStart = new int[capacity + 1];
+        labels = new byte[capacity * 4];
+        heights = new int[capacity];
+        summaries = new int[capacity];
+    }
+
+    /**
+     * Adds the node to the maze if no node with the same label is present
+     *
+     * @param node the node to add
+     * @return true if the maze did not already contain a node with this label
+     */
+    public boolean add(MazeNode node) {
+        return add(node.getLabel(), node.getLifePoints());
+    }
+
+    /**
+     * Adds a node with the given label and life points to the maze 
+     * if no node with the same label is present
+     *
+     * @param label label of the node
+     * @param points life points of the node
+     * @return true if the maze did not already contain a node with this label
+     * @throws NullPointerException if the label is null
+     */
+    public boolean add(String label, int points) {
+        if (label == null) {
+            throw new NullPointerException("Label can not be null");
+        }
+        byte[] key = label.getBytes(StandardCharsets.UTF_8);
+
+        int parent = NONE;
+        int compare = 0;
+        int depth = 0;
+        if (size > 0) {
+            int current = 0;
+            while (current != NONE) {
+                compare = compareLabel(current, key);
+                if (compare == 0) { //duplicate
+                    return false;
+                }
+                parent = current;
+                current = compare > 0 ? left[current] : right[current];
+                depth++;
+            }
+        }
+
+        int node = append(key, points);
+        if (parent != NONE) {
+            if (compare > 0) {
+                left[parent] = node;
+            } else {
+                right[parent] = node;
+            }
+        }
+        height = Math.max(height, depth + 1);
+        summarized = false;
+        return true;
+    }
+
+    /**
+     * Computes the height and the summary of every node. A node is always added 
+     * after its parent, so going through the nodes from the last one to the first 
+     * reaches both children of a node before the node itself
+     */
+    private void summarize() {
+        for (int node = size - 1; node >= 0; node--) {
+            int leftHeight = left[node] == NONE ? 0 : heights[left[node]];
+            int rightHeight = right[node] == NONE ? 0 : heights[right[node]];
+            heights[node] = Math.max(leftHeight, rightHeight) + 1;
+            summaries[node] = PathSearch.summary(lifePoints[node], heights[node],
+                                                 leftHeight, left[node] == NONE ? 0 : summaries[left[node]],
+                                                 rightHeight, right[node] == NONE ? 0 : summaries[right[node]]);
+        }
+        summarized = true;
+    }
+
+    /**
+     * Returns true if the maze contains a node with the given label
+     *
+     * @param label the label to look for
+     * @return true if a node with this label is present
+     * @throws NullPointerException if the label is null
+     */
+    public boolean contains(String label) {
+        if (label == null) {
+            throw new NullPointerException("Label can not be null");
+        }
+        byte[] key = label.getBytes(StandardCharsets.UTF_8);
+
+        int current = size > 0 ? 0 : NONE;
+        while (current != NONE) {
+            int compare = compareLabel(current, key);
+            if (compare == 0) {
+                return true;
+            }
+            current = compare > 0 ? left[current] : right[current];
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of nodes in the maze
+     *
+     * @return size the number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the height of the maze, zero if it is empty
+     *
+     * @return height the number of levels of the maze
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Prints all valid paths from the root to the leaf nodes where the nodes 
+     * are at the last level and life points are sufficient, in the same format 
+     * and order as Maze.printAvailablePaths
+     */
+    public void printAvailablePaths() {
+        try {
+            OutputStream out = new BufferedOutputStream(System.out, 1 << 16);
+            printAvailablePaths(out);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes all valid paths to the specified stream as UTF-8, one path per line, 
+     * as they are found. The stream is not flushed or closed
+     *
+     * @param out the stream to write the paths to
+     * @throws IOException if writing fails
+     */
+    public void printAvailablePaths(OutputStream out) throws IOException {
+        if (!summarized) {
+            summarize();
+        }
+        byte[] lineSeparator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+        PathSearch.forEachExit(new Nodes(), size == 0 ? NONE : 0, (path, length) -> {
+            for (int i = 0; i < length; i++) {
+                int node = path[i];
+                out.write(labels, labelStart[node], labelStart[node + 1] - labelStart[node]);
+                out.write(' ');
+            }
+            out.write(lineSeparator);
+        });
+    }
+
+    /**
+     * The nodes as PathSearch sees them, by their index
+     */
+    private class Nodes implements PathSearch.IntTree {
+        @Override
+        public int left(int node) {
+            return left[node];
+        }
+
+        @Override
+        public int right(int node) {
+            return right[node];
+        }
+
+        @Override
+        public int lifePoints(int node) {
+            return lifePoints[node];
+        }
+
+        @Override
+        public int height(int node) {
+            return heights[node];
+        }
+
+        @Override
+        public int summary(int node) {
+            return summaries[node];
+        }
+    }
+
+    /**
+     * Compares the label of a node with a key, byte by byte as unsigned values
+     *
+     * @param node the index of the node
+     * @param key the UTF-8 bytes of the other label
+     * @return less than 0 if the label of node is smaller, greater than 0 if 
+     *         it is greater, 0 if they are equal
+     */
+    private int compareLabel(int node, byte[] key) {
+        int start = labelStart[node];
+        int length = labelStart[node + 1] - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int a = labels[start + i] & 0xFF;
+            int b = key[i] & 0xFF;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Stores a new node without children at the end of the arrays
+     *
+     * @param key the UTF-8 bytes of the label
+     * @param points the life points of the node
+     * @return the index of the new node
+     */
+    private int append(byte[] key, int points) {
+        if (size == left.length) {
+            int capacity = (int) Math.min((long) size + (size >> 1) + 1, Integer.MAX_VALUE - 8);
+            if (capacity == size) {
+                throw new IllegalStateException("The maze is full");
+            }
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            lifePoints = Arrays.copyOf(lifePoints, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            summaries = Arrays.copyOf(summaries, capacity);
+            labelStart = Arrays.copyOf(labelStart, capacity + 1);
+        }
+
+        int start = labelStart[size];
+        long end = (long) start + key.length;
+        if (end > labels.length) {
+            long capacity = Math.max(end, (long) labels.length + (labels.length >> 1));
+            if (end > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("The label table is full");
+            }
+            labels = Arrays.copyOf(labels, (int) Math.min(capacity, Integer.MAX_VALUE - 8));
+        }
+        System.arraycopy(key, 0, labels, start, key.length);
+
+        int node = size;
+        left[node] = NONE;
+        right[node] = NONE;
+        lifePoints[node] = points;
+        labelStart[node + 1] = (int) end;
+        size++;
+        return node;
+    }
+}
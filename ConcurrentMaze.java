@@ -0,0 +1,192 @@
+package project5;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Maze that can be read by many threads while another thread changes it
+ * Every change creates a new version of the maze as a PersistentBST and publishes
+ * it atomically. Readers take a snapshot, which is never changed afterwards, so
+ * paths, iterators and ceiling/floor queries see one consistent version without locks
+ *
+ * The paths found in a version are the same ones Maze finds in a maze of the same shape
+ *
+ * @author Carsten Kaiser
+ */
+public class ConcurrentMaze {
+    private final AtomicReference<PersistentBST<MazeNode>> current;
+
+    /**
+     * Constructs an empty maze that keeps the shape given by the insertion order
+     */
+    public ConcurrentMaze() {
+        this(false);
+    }
+
+    /**
+     * Constructs an empty maze
+     *
+     * @param balanced true to keep the maze AVL balanced, false for plain insertion order
+     */
+    public ConcurrentMaze(boolean balanced) {
+        //every node keeps the summary Maze keeps, so the search can skip subtrees the same way
+        current = new AtomicReference<>(new PersistentBST<MazeNode>(balanced, 
+            (node, height, leftHeight, leftSummary, rightHeight, rightSummary) -> 
+                PathSearch.summary(node.getLifePoints(), height, leftHeight, leftSummary, 
+                                   rightHeight, rightSummary)));
+    }
+
+    /**
+     * Adds a node to the maze and publishes the new version
+     * Concurrent writers are safe, but each retries if another one publishes first
+     *
+     * @param node the node to add
+     * @return true if the maze did not already contain a node with the same label
+     * @throws NullPointerException if node is null
+     */
+    public boolean add(MazeNode node) {
+        while (true) {
+            PersistentBST<MazeNode> version = current.get();
+            PersistentBST<MazeNode> next = version.add(node);
+            if (next == version) {
+                return false;
+            }
+            if (current.compareAndSet(version, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes a node from the maze and publishes the new version
+     *
+     * @param node the node to remove
+     * @return true if the maze contained the node
+     * @throws NullPointerException if node is null
+     */
+    public boolean remove(MazeNode node) {
+        while (true) {
+            PersistentBST<MazeNode> version = current.get();
+            PersistentBST<MazeNode> next = version.remove(node);
+            if (next == version) {
+                return false;
+            }
+            if (current.compareAndSet(version, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the current version of the maze. It never changes, so it can be
+     * iterated and searched while the maze is being changed
+     *
+     * @return the current version
+     */
+    public PersistentBST<MazeNode> snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Prints all valid paths of the current version from the root to the leaf nodes
+     * where the nodes are at the last level and life points are sufficient
+     */
+    public void printAvailablePaths() {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        printAvailablePaths(snapshot(), out);
+        out.flush();
+    }
+
+    /**
+     * Writes all valid paths of the specified version to the writer, one path per line,
+     * as they are found. The writer is not flushed or closed
+     *
+     * @param version the version to search
+     * @param out the writer to write the paths to
+     */
+    public static void printAvailablePaths(PersistentBST<MazeNode> version, PrintWriter out) {
+        forEachAvailablePath(version, path -> {
+            for (MazeNode node : path) {
+                out.write(node.getLabel());
+                out.write(' ');
+            }
+            out.println();
+        });
+    }
+
+    /**
+     * Passes every valid path of the specified version, from the root to the exit,
+     * to the action in the order printAvailablePaths prints them. The same read-only
+     * list is reused for every path and changes once the action returns. A version 
+     * that does not come from a ConcurrentMaze keeps no summaries; it gives the same 
+     * paths, but fewer subtrees are skipped
+     *
+     * @param version the version to search
+     * @param action the action to run for each path
+     */
+    public static void forEachAvailablePath(PersistentBST<MazeNode> version,
+                                            Consumer<List<MazeNode>> action) {
+        //the path of the search seen as the maze nodes of its nodes
+        class Path extends AbstractList<MazeNode> {
+            private List<PersistentBST.Node<MazeNode>> nodes;
+
+            @Override
+            public MazeNode get(int index) {
+                return nodes.get(index).data;
+            }
+
+            @Override
+            public int size() {
+                return nodes.size();
+            }
+        }
+        Path path = new Path();
+
+        try {
+            PathSearch.forEachExit(new Nodes(), version.root(), nodes -> {
+                path.nodes = nodes;
+                action.accept(path);
+            });
+        } catch (IOException e) {
+            //the action cannot throw it
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The nodes of a version as PathSearch sees them
+     */
+    private static class Nodes implements PathSearch.Tree<PersistentBST.Node<MazeNode>> {
+        @Override
+        public PersistentBST.Node<MazeNode> left(PersistentBST.Node<MazeNode> node) {
+            return node.left;
+        }
+
+        @Override
+        public PersistentBST.Node<MazeNode> right(PersistentBST.Node<MazeNode> node) {
+            return node.right;
+        }
+
+        @Override
+        public int lifePoints(PersistentBST.Node<MazeNode> node) {
+            return node.data.getLifePoints();
+        }
+
+        @Override
+        public int height(PersistentBST.Node<MazeNode> node) {
+            return node.height;
+        }
+
+        @Override
+        public int summary(PersistentBST.Node<MazeNode> node) {
+            return node.summary;
+        }
+    }
+}
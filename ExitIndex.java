@@ -0,0 +1,116 @@
+package project5;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of the exits of a maze by the life points a hero needs at the start to reach them
+ *
+ * On the way to a node at depth k the hero collects the life points of the k + 1 nodes
+ * on the path and pays one life point for each of the k moves, and has to keep more
+ * than zero life points at every node. A hero starting with N life points therefore
+ * reaches an exit if N is larger than k - (sum of the life points up to depth k) at
+ * every depth k of its path. The smallest such N is computed once for every exit, so
+ * the exits of any hero are found with a binary search
+ *
+ * The index describes the maze at the time it was built and does not change with it
+ *
+ * @author Carsten Kaiser
+ */
+public class ExitIndex {
+    private final MazeNode[] exits;   //exits sorted by the life points they need
+    private final long[] required;    //required[i] is the smallest starting life that reaches exits[i]
+
+    /**
+     * Constructs an index over exits that are already sorted by the life points they need
+     *
+     * @param exits the exits
+     * @param required the life points each exit needs, ascending
+     */
+    ExitIndex(MazeNode[] exits, long[] required) {
+        this.exits = exits;
+        this.required = required;
+    }
+
+    /**
+     * Returns the number of exits of the maze, reachable or not
+     *
+     * @return the number of leaves on the last level
+     */
+    public int size() {
+        return exits.length;
+    }
+
+    /**
+     * Returns the number of exits the hero can reach with its active life points
+     *
+     * @param hero the hero
+     * @return the number of reachable exits
+     */
+    public int countReachable(Hero hero) {
+        return countReachable(hero.getActiveLifePoints());
+    }
+
+    /**
+     * Returns the number of exits a hero starting with the given life points can reach
+     *
+     * @param lifePoints the life points at the start
+     * @return the number of reachable exits
+     */
+    public int countReachable(int lifePoints) {
+        //the first exit that needs more than lifePoints
+        int low = 0;
+        int high = required.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (required[middle] <= lifePoints) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the exits the hero can reach with its active life points, ordered
+     * from the one that needs the fewest life points to the one that needs the most
+     *
+     * @param hero the hero
+     * @return read-only list of the reachable exits
+     */
+    public List<MazeNode> reachableExits(Hero hero) {
+        return Collections.unmodifiableList(Arrays.asList(exits).subList(0, countReachable(hero)));
+    }
+
+    /**
+     * Counts the reachable exits of many heroes in one sweep over the index
+     * The heroes are sorted by their life points, and the number of reachable exits
+     * only grows from one hero to the next, so the index is passed over once
+     *
+     * @param heroes the heroes
+     * @return counts where counts[i] is the number of exits heroes[i] can reach
+     */
+    public int[] countReachable(Hero[] heroes) {
+        int[] counts = new int[heroes.length];
+
+        //sort the positions of the heroes by life points, as longs with the position
+        //in the low bits so that a primitive sort can be used
+        long[] order = new long[heroes.length];
+        for (int i = 0; i < heroes.length; i++) {
+            order[i] = ((long) heroes[i].getActiveLifePoints() << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int reachable = 0;
+        for (long entry : order) {
+            int lifePoints = (int) (entry >> 32);
+            while (reachable < required.length && required[reachable] <= lifePoints) {
+                reachable++;
+            }
+            counts[(int) entry] = reachable;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,571 @@
+package project5;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+* Binary search tree of long values with the navigation API of BST
+* Values are stored in the nodes as long and compared with <, so no value is ever 
+* boxed or compared through compareTo. Like BST, the tree keeps the shape given 
+* by the insertion order, or keeps itself AVL balanced if created balanced
+* 
+* Methods that return a value and find none, such as ceiling or first, throw 
+* a NoSuchElementException, since a long can not be null
+*
+* IntBST is a line-for-line copy of this class with the other value type. A change to
+* one of them has to be made to the other in the same way, so that they stay in sync
+*
+* @author Carsten Kaiser
+*/
+public class LongBST {
+    private Node root;
+    private boolean balanced; //true if add and remove keep the tree AVL balanced
+    private int modCount;     //number of structural modifications, used by iterators to fail fast
+    private Node[] path = new Node[0]; //the search path of add and remove, grown when the tree grows
+
+    /**
+    * Constructs a new empty tree that keeps the shape given by the insertion order
+    */
+    public LongBST() {
+        this(false);
+    }
+
+    /**
+    * Constructs a new empty tree
+    * If balanced is true, the tree rebalances itself (AVL) after every add and remove 
+    * so that its height stays O(log n) regardless of the insertion order
+    *
+    * @param balanced true to keep this tree balanced, false for plain insertion order
+    */
+    public LongBST(boolean balanced) {
+        this.balanced = balanced;
+    }
+
+    /**
+    * Adds the specified value to this tree if it is not already present
+    *
+    * @param value value to be added to this tree
+    * @return true if this tree did not already contain the value
+    */
+    public boolean add(long value) {
+        if (root == null) {
+            root = new Node(value);
+            modCount++;
+            return true;
+        }
+
+        Node[] path = path(height() + 1);
+        int depth = 0;
+        Node current = root;
+        while (true) {
+            path[depth++] = current;
+            if (value < current.value) {
+                if (current.left == null) {
+                    current.left = new Node(value);
+                    break;
+                }
+                current = current.left;
+            } else if (value > current.value) {
+                if (current.right == null) {
+                    current.right = new Node(value);
+                    break;
+                }
+                current = current.right;
+            } else { //duplicate
+                return false;
+            }
+        }
+
+        modCount++;
+        updatePath(path, depth);
+        return true;
+    }
+
+    /**
+    * Removes the specified value from this tree if it is present
+    * A node with two children is replaced by the node holding its successor, 
+    * the same way BST removes nodes
+    *
+    * @param value value to be removed from this tree
+    * @return true if this tree contained the value
+    */
+    public boolean remove(long value) {
+        Node[] path = path(height() + 1);
+        int depth = 0;
+        Node node = root;
+        while (node != null && node.value != value) {
+            path[depth++] = node;
+            node = value < node.value ? node.left : node.right;
+        }
+        if (node == null) {
+            Arrays.fill(path, 0, depth, null);
+            return false;
+        }
+
+        Node replacement;
+        if (node.left == null || node.right == null) {
+            replacement = node.left != null ? node.left : node.right;
+            replaceChild(depth == 0 ? null : path[depth - 1], node, replacement);
+        } else {
+            //the successor takes the place of node, the nodes between them
+            //follow it on the path so that their heights are updated too
+            int nodeIndex = depth++;
+            Node minParent = node;
+            Node minNode = node.right;
+            while (minNode.left != null) {
+                path[depth++] = minNode;
+                minParent = minNode;
+                minNode = minNode.left;
+            }
+
+            if (minParent != node) {
+                minParent.left = minNode.right;
+                minNode.right = node.right;
+            }
+            minNode.left = node.left;
+            replaceChild(nodeIndex == 0 ? null : path[nodeIndex - 1], node, minNode);
+            path[nodeIndex] = minNode;
+        }
+
+        node.left = null;
+        node.right = null;
+        modCount++;
+        updatePath(path, depth);
+        return true;
+    }
+
+    /**
+    * Puts replacement in the place of node under parent, or at the root
+    *
+    * @param parent the parent of node, null if node is the root
+    * @param node the node being replaced
+    * @param replacement the node that takes its place, may be null
+    */
+    private void replaceChild(Node parent, Node node, Node replacement) {
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == node) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+    }
+
+    /**
+    * Updates heights and sizes on a search path, from the bottom up,
+    * and rebalances every node on it if this tree is balanced
+    * The path is cleared, so that it does not keep removed nodes alive
+    *
+    * @param path the nodes from the root down
+    * @param depth number of nodes on the path
+    */
+    private void updatePath(Node[] path, int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            Node node = path[i];
+            updateNode(node);
+            if (balanced) {
+                Node subtreeRoot = rebalance(node);
+                if (subtreeRoot != node) {
+                    replaceChild(i == 0 ? null : path[i - 1], node, subtreeRoot);
+                }
+            }
+            path[i] = null;
+        }
+    }
+
+    /**
+    * Returns the array that holds the search path of add and remove, 
+    * grown first if it is shorter than the given length
+    *
+    * @param length the deepest path the caller can walk
+    * @return path the path array, with no nodes in it
+    */
+    private Node[] path(int length) {
+        if (path.length < length) {
+            path = new Node[Math.max(length, 2 * path.length)];
+        }
+        return path;
+    }
+
+    /**
+    * Recomputes the height and the subtree size of the specified node 
+    * from the values stored in its children
+    *
+    * @param node the node whose height and size are recomputed
+    */
+    private static void updateNode(Node node) {
+        node.height = Math.max(heightOf(node.left), heightOf(node.right)) + 1;
+        node.size = sizeOf(node.left) + sizeOf(node.right) + 1;
+    }
+
+    /**
+    * Returns the height of the specified subtree, zero for an empty subtree
+    *
+    * @param node root of the subtree
+    * @return the height of the subtree
+    */
+    private static int heightOf(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+    * Returns the number of values in the specified subtree, zero for an empty subtree
+    *
+    * @param node root of the subtree
+    * @return the number of nodes in the subtree
+    */
+    private static int sizeOf(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+    * Restores the AVL property at the specified node using single or double rotations
+    * The children of node are expected to be balanced with correct heights
+    *
+    * @param node the node to rebalance
+    * @return the root of the rebalanced subtree that replaces node
+    */
+    private static Node rebalance(Node node) {
+        int balance = heightOf(node.left) - heightOf(node.right);
+
+        if (balance > 1) { //left heavy
+            if (heightOf(node.left.left) < heightOf(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        } else if (balance < -1) { //right heavy
+            if (heightOf(node.right.right) < heightOf(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+
+        return node;
+    }
+
+    /**
+    * Rotates the subtree rooted at node to the left
+    *
+    * @param node the root of the subtree, its right child becomes the new root
+    * @return the new root of the subtree
+    */
+    private static Node rotateLeft(Node node) {
+        Node newRoot = node.right;
+        node.right = newRoot.left;
+        newRoot.left = node;
+        updateNode(node);
+        updateNode(newRoot);
+        return newRoot;
+    }
+
+    /**
+    * Rotates the subtree rooted at node to the right
+    *
+    * @param node the root of the subtree, its left child becomes the new root
+    * @return the new root of the subtree
+    */
+    private static Node rotateRight(Node node) {
+        Node newRoot = node.left;
+        node.left = newRoot.right;
+        newRoot.right = node;
+        updateNode(node);
+        updateNode(newRoot);
+        return newRoot;
+    }
+
+    /**
+    * Returns true if this tree contains the specified value
+    *
+    * @param value value whose presence is to be tested
+    * @return true if this tree contains the value
+    */
+    public boolean contains(long value) {
+        Node current = root;
+        while (current != null) {
+            if (value < current.value) {
+                current = current.left;
+            } else if (value > current.value) {
+                current = current.right;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+    * Returns the least value in this tree greater than or equal to the given value
+    *
+    * @param value the value to match
+    * @return the ceiling of value
+    * @throws NoSuchElementException if there is no such value
+    */
+    public long ceiling(long value) {
+        Node current = root;
+        Node ceiling = null;
+        while (current != null) {
+            if (value < current.value) {
+                ceiling = current;
+                current = current.left;
+            } else if (value > current.value) {
+                current = current.right;
+            } else {
+                return current.value;
+            }
+        }
+        return valueOf(ceiling);
+    }
+
+    /**
+    * Returns the greatest value in this tree less than or equal to the given value
+    *
+    * @param value the value to match
+    * @return the floor of value
+    * @throws NoSuchElementException if there is no such value
+    */
+    public long floor(long value) {
+        Node current = root;
+        Node floor = null;
+        while (current != null) {
+            if (value < current.value) {
+                current = current.left;
+            } else if (value > current.value) {
+                floor = current;
+                current = current.right;
+            } else {
+                return current.value;
+            }
+        }
+        return valueOf(floor);
+    }
+
+    /**
+    * Returns the least value in this tree strictly greater than the given value
+    *
+    * @param value the value to match
+    * @return the next higher value
+    * @throws NoSuchElementException if there is no such value
+    */
+    public long higher(long value) {
+        Node current = root;
+        Node higher = null;
+        while (current != null) {
+            if (value < current.value) {
+                higher = current;
+                current = current.left;
+            } else {
+                current = current.right;
+            }
+        }
+        return valueOf(higher);
+    }
+
+    /**
+    * Returns the greatest value in this tree strictly less than the given value
+    *
+    * @param value the value to match
+    * @return the next lower value
+    * @throws NoSuchElementException if there is no such value
+    */
+    public long lower(long value) {
+        Node current = root;
+        Node lower = null;
+        while (current != null) {
+            if (value > current.value) {
+                lower = current;
+                current = current.right;
+            } else {
+                current = current.left;
+            }
+        }
+        return valueOf(lower);
+    }
+
+    /**
+    * Returns the value of a search result
+    *
+    * @param node the node found, or null
+    * @return the value of node
+    * @throws NoSuchElementException if node is null
+    */
+    private static long valueOf(Node node) {
+        if (node == null) {
+            throw new NoSuchElementException("No matching value");
+        }
+        return node.value;
+    }
+
+    /**
+    * Returns the first (lowest) value in this tree
+    *
+    * @return the first value
+    * @throws NoSuchElementException if this tree is empty
+    */
+    public long first() {
+        if (root == null) {
+            throw new NoSuchElementException("Tree is empty");
+        }
+        Node current = root;
+        while (current.left != null) {
+            current = current.left;
+        }
+        return current.value;
+    }
+
+    /**
+    * Returns the last (highest) value in this tree
+    *
+    * @return the last value
+    * @throws NoSuchElementException if this tree is empty
+    */
+    public long last() {
+        if (root == null) {
+            throw new NoSuchElementException("Tree is empty");
+        }
+        Node current = root;
+        while (current.right != null) {
+            current = current.right;
+        }
+        return current.value;
+    }
+
+    /**
+    * Returns the value at the specified position in this tree
+    *
+    * @param index index of the value to return
+    * @return the value at the specified position
+    * @throws IndexOutOfBoundsException if the index is out of range
+    */
+    public long get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node current = root;
+        while (true) {
+            int leftSize = sizeOf(current.left);
+            if (index < leftSize) {
+                current = current.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                current = current.right;
+            } else {
+                return current.value;
+            }
+        }
+    }
+
+    /**
+    * Removes all of the values from this tree, leaving it empty
+    */
+    public void clear() {
+        root = null;
+        modCount++;
+    }
+
+    /**
+    * Returns the number of values in this tree
+    *
+    * @return size size of tree
+    */
+    public int size() {
+        return sizeOf(root);
+    }
+
+    /**
+    * Returns the height of this tree, zero if it is empty
+    *
+    * @return height the number of levels in the tree
+    */
+    public int height() {
+        return heightOf(root);
+    }
+
+    /**
+    * Returns true if this tree contains no values
+    *
+    * @return true if this tree is empty
+    */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+    * Returns an iterator over the values in ascending order. nextLong returns 
+    * the values without boxing. The iterator fails fast with a 
+    * ConcurrentModificationException if the tree is modified, and does not support remove
+    *
+    * @return an iterator over the values in this tree
+    */
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            //the nodes whose value and right subtree are still to come
+            private final Node[] stack = new Node[height()];
+            private final int expectedModCount = modCount;
+            private int top = pushLeft(root, 0);
+
+            private int pushLeft(Node node, int top) {
+                while (node != null) {
+                    stack[top++] = node;
+                    node = node.left;
+                }
+                return top;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return top > 0;
+            }
+
+            @Override
+            public long nextLong() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (top == 0) {
+                    throw new NoSuchElementException("No more elements");
+                }
+                Node node = stack[--top];
+                stack[top] = null;
+                top = pushLeft(node.right, top);
+                return node.value;
+            }
+        };
+    }
+
+    /**
+    * Returns a string representation of this tree, the values in ascending order
+    * enclosed in square brackets ("[]") and separated by ", "
+    *
+    * @return result a string representation of this tree
+    */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        PrimitiveIterator.OfLong iterator = iterator();
+        while (iterator.hasNext()) {
+            result.append(iterator.nextLong());
+            if (iterator.hasNext()) {
+                result.append(", ");
+            }
+        }
+        result.append("]");
+        return result.toString();
+    }
+
+    /**
+    * Node of the tree, with the height and the size of its subtree
+    */
+    private static final class Node {
+        final long value;
+        Node left;
+        Node right;
+        int height = 1;
+        int size = 1; //number of nodes in the subtree rooted at this node
+
+        Node(long value) {
+            this.value = value;
+        }
+    }
+}
@@ -1,7 +1,23 @@
 package project5;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 
 /**
@@ -13,6 +29,35 @@ import java.util.List;
  * @author Carsten Kaiser
  */
 public class Maze extends BST<MazeNode>{
+    //leaves that can be reached with positive life points, grouped by their depth,
+    //null until indexPaths is called; the leaves arrive in label order, so the 
+    //trees are AVL balanced to keep them from degenerating into lists
+    private List<BST<MazeNode>> leavesByDepth;
+    //exit index from the last call to exitIndex, valid while modCount is unchanged
+    private ExitIndex exitIndex;
+    private int exitIndexModCount;
+    //content hash from the last call to contentHash, valid while modCount is unchanged
+    private String contentHash;
+    private int contentHashModCount;
+
+    /**
+     * Constructs an empty maze whose shape follows the order in which nodes are added
+     */
+    public Maze() {
+        super();
+    }
+
+    /**
+     * Constructs an empty maze that can keep itself balanced
+     * The rules for available paths are the same in both modes, but a balanced
+     * maze has a different shape than the one given by the insertion order
+     *
+     * @param balanced true to keep the maze balanced, false for plain insertion order
+     */
+    public Maze(boolean balanced) {
+        super(balanced);
+    }
+
     /**
     * Adds node to BST using add method from super class
     *
@@ -23,75 +68,820 @@ public class Maze extends BST<MazeNode>{
         return super.add(node);  // Call the parent BST add method, return type matches
     }
 
+    /**
+     * Replaces the contents of this maze with the specified nodes
+     * With insertionOrder set, the nodes are added one by one in list order, so the 
+     * maze gets the shape the README describes for the input file. Otherwise the 
+     * nodes are sorted and the maze is built balanced in O(n) after sorting; 
+     * of several nodes with the same label only the first one is kept either way
+     *
+     * @param nodes the nodes of the maze, in input order
+     * @param insertionOrder true to keep the shape given by the order of the nodes
+     */
+    public void load(List<MazeNode> nodes, boolean insertionOrder) {
+        if (insertionOrder) {
+            clear();
+            for (MazeNode node : nodes) {
+                add(node);
+            }
+        } else {
+            buildBalanced(nodes.toArray(new MazeNode[0]));
+        }
+    }
+
+    /**
+     * Returns a new maze with the nodes of this maze and the specified one, for 
+     * example two regions of a larger maze. Of two nodes with the same label the one 
+     * of this maze is kept. The result is built balanced, like load without 
+     * insertionOrder, so its paths are not the paths of either region
+     *
+     * @param other the maze to merge with this maze
+     * @return union the merged maze
+     * @throws NullPointerException if other is null
+     */
+    @Override
+    public Maze union(BST<MazeNode> other) {
+        return (Maze) super.union(other);
+    }
+
+    /**
+     * Returns a new maze, built balanced, with the nodes of this maze whose labels 
+     * are also in the specified one
+     *
+     * @param other the maze to intersect with this maze
+     * @return intersection the common part of the two mazes
+     * @throws NullPointerException if other is null
+     */
+    @Override
+    public Maze intersection(BST<MazeNode> other) {
+        return (Maze) super.intersection(other);
+    }
+
+    /**
+     * Returns a new maze, built balanced, with the nodes of this maze whose labels 
+     * are not in the specified one
+     *
+     * @param other the maze whose labels are left out
+     * @return difference the rest of this maze
+     * @throws NullPointerException if other is null
+     */
+    @Override
+    public Maze difference(BST<MazeNode> other) {
+        return (Maze) super.difference(other);
+    }
+
+    @Override
+    protected Maze newTree() {
+        return new Maze(balanced);
+    }
+
+    /**
+     * Saves this maze in the binary snapshot format, see MazeSnapshot
+     *
+     * @param file the file to write to, replaced if it exists
+     * @throws IOException if the file cannot be written
+     * @throws IllegalStateException if the snapshot would be larger than 2 GB
+     */
+    public void save(Path file) throws IOException {
+        MazeSnapshot.save(this, file);
+    }
+
+    /**
+     * Opens a maze snapshot written by save. The file is mapped into memory and 
+     * checked, and its paths are searched directly in the mapped file
+     *
+     * @param file the snapshot file
+     * @return the mapped snapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static MazeSnapshot open(Path file) throws IOException {
+        return MazeSnapshot.open(file);
+    }
+
+    /**
+     * Builds an index of the leaves that can be reached with positive life points
+     * From then on every add and remove updates only the part of the index below 
+     * the changed subtree, and printAvailablePaths answers from the index instead 
+     * of searching the whole maze
+     */
+    public void indexPaths() {
+        leavesByDepth = new ArrayList<>();
+        if (root != null) {
+            indexLeaves(root, 0, 0);
+        }
+    }
+
+    /**
+     * Returns the index of the exits by the life points a hero needs to reach them
+     * The index is built with one walk over the whole maze and reused until the
+     * maze changes. With it, countReachable(new Hero(0)) is the number of paths
+     * printAvailablePaths prints
+     *
+     * @return the exit index of the maze as it is now
+     */
+    public ExitIndex exitIndex() {
+        if (exitIndex != null && exitIndexModCount == modCount) {
+            return exitIndex;
+        }
+
+        List<MazeNode> exits = new ArrayList<>();
+        List<Long> required = new ArrayList<>();
+        if (root != null) {
+            int height = root.height;
+            //sum of the life points and life points needed on the path, by depth
+            long[] collected = new long[height];
+            long[] needed = new long[height];
+            walk(root, new Visitor() {
+                @Override
+                protected boolean enter(BST<MazeNode>.Node node, int depth) {
+                    //no pruning by life points, but a subtree too short for the last level has no exits
+                    if (depth + node.height < height) {
+                        return false;
+                    }
+                    long before = depth == 0 ? 0 : collected[depth - 1];
+                    collected[depth] = before + node.data.getLifePoints();
+                    //life on arrival is N + before - depth, after the node it has to be positive
+                    long need = depth - collected[depth] + 1;
+                    needed[depth] = depth == 0 ? need : Math.max(needed[depth - 1], need);
+
+                    //only leaves on the last level are exits
+                    if (depth == height - 1) {
+                        exits.add(node.data);
+                        required.add(needed[depth]);
+                    }
+                    return true;
+                }
+            });
+        }
+
+        //sort by the life points needed, exits that need the same stay in label order
+        Integer[] order = new Integer[exits.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(required.get(a), required.get(b)));
+        MazeNode[] sortedExits = new MazeNode[order.length];
+        long[] sortedRequired = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedExits[i] = exits.get(order[i]);
+            sortedRequired[i] = required.get(order[i]);
+        }
+
+        exitIndex = new ExitIndex(sortedExits, sortedRequired);
+        exitIndexModCount = modCount;
+        return exitIndex;
+    }
+
+    /**
+     * Returns a SHA-256 hash of the maze: the label and life points of every node and 
+     * the shape of the tree, in preorder. Adding the nodes in preorder rebuilds the 
+     * same tree, so two mazes have the same hash exactly when they were built from 
+     * the same nodes into the same shape, and then print the same paths. The hash is 
+     * computed with one walk and reused until the maze changes
+     *
+     * @return the hash as 64 lowercase hexadecimal digits
+     */
+    public String contentHash() {
+        if (contentHash != null && contentHashModCount == modCount) {
+            return contentHash;
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        //nodes are written to a buffer that is hashed whenever it is full
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        if (root != null) {
+            walk(root, new Visitor() {
+                @Override
+                protected boolean enter(BST<MazeNode>.Node node, int depth) {
+                    String label = node.data.getLabel();
+                    if (buffer.remaining() < 9 + 2 * label.length()) {
+                        digest.update(buffer.flip());
+                        buffer.clear();
+                    }
+                    //which children the node has, so that the shape is part of the hash
+                    buffer.put((byte) ((node.left != null ? 1 : 0) | (node.right != null ? 2 : 0)));
+                    buffer.putInt(node.data.getLifePoints());
+                    buffer.putInt(label.length());
+                    for (int i = 0; i < label.length(); i++) {
+                        if (buffer.remaining() < 2) {
+                            //only labels longer than the buffer get here
+                            digest.update(buffer.flip());
+                            buffer.clear();
+                        }
+                        buffer.putChar(label.charAt(i));
+                    }
+                    return true;
+                }
+            });
+        }
+        digest.update(buffer.flip());
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        contentHash = hex.toString();
+        contentHashModCount = modCount;
+        return contentHash;
+    }
+
+    /**
+     * Keeps Node.summary at the fewest life points a hero has to arrive with at the 
+     * node to reach one of the deepest leaves of its subtree. A search for exits is 
+     * only interested in the deepest leaves, since a node is on the path to the last 
+     * level exactly when its depth plus its height is the height of the maze, so it 
+     * can skip every node it arrives at with fewer life points than the summary
+     *
+     * @param node the node whose summary is recomputed
+     */
+    @Override
+    protected void updateSummary(BST<MazeNode>.Node node) {
+        BST<MazeNode>.Node left = node.left;
+        BST<MazeNode>.Node right = node.right;
+        node.summary = PathSearch.summary(node.data.getLifePoints(), node.height,
+                                          left == null ? 0 : left.height, left == null ? 0 : left.summary,
+                                          right == null ? 0 : right.height, right == null ? 0 : right.summary);
+    }
+
+    /**
+     * Keeps the path index in sync with the maze by re-indexing the changed subtree
+     *
+     * @param node root of the changed subtree, null if the whole maze changed
+     */
+    @Override
+    protected void subtreeChanged(BST<MazeNode>.Node node) {
+        if (leavesByDepth == null) {
+            return;
+        }
+        if (node == null || node.parent == null) {
+            indexPaths();
+            return;
+        }
+
+        //the subtree holds exactly the labels strictly between the nearest 
+        //ancestors it hangs to the right and to the left of
+        MazeNode lower = null;
+        MazeNode upper = null;
+        List<BST<MazeNode>.Node> ancestors = new ArrayList<>();
+        BST<MazeNode>.Node child = node;
+        while (child.parent != null) {
+            BST<MazeNode>.Node parent = child.parent;
+            if (parent.left == child && upper == null) {
+                upper = parent.data;
+            } else if (parent.right == child && lower == null) {
+                lower = parent.data;
+            }
+            ancestors.add(parent);
+            child = parent;
+        }
+
+        //drop the old leaves of the subtree, including any removed node
+        int depth = ancestors.size();
+        for (int i = depth; i < leavesByDepth.size(); i++) {
+            BST<MazeNode> leaves = leavesByDepth.get(i);
+            MazeNode leaf;
+            if (lower != null) {
+                leaf = leaves.higher(lower);
+            } else if (!leaves.isEmpty()) {
+                leaf = leaves.first();
+            } else {
+                leaf = null;
+            }
+            while (leaf != null && (upper == null || leaf.compareTo(upper) < 0)) {
+                leaves.remove(leaf);
+                leaf = leaves.higher(leaf);
+            }
+        }
+
+        //walk down from the root to find the life points on arrival at node
+        int lifePoints = 0;
+        for (int i = ancestors.size() - 1; i >= 0; i--) {
+            lifePoints += ancestors.get(i).data.getLifePoints();
+            if (lifePoints <= 0) {
+                return;
+            }
+            lifePoints--;
+        }
+
+        indexLeaves(node, lifePoints, depth);
+    }
+
+    /**
+     * Adds the reachable leaves of a subtree to the path index
+     *
+     * @param node the root of the subtree
+     * @param lifePoints life points on arrival at node
+     * @param depth the depth of node, zero for the root
+     */
+    private void indexLeaves(BST<MazeNode>.Node node, int lifePoints, int depth) {
+        LeafSearch search = new LeafSearch(lifePoints) {
+            @Override
+            protected void reached(BST<MazeNode>.Node leaf, int leafDepth) {
+                while (leavesByDepth.size() <= depth + leafDepth) {
+                    leavesByDepth.add(new BST<MazeNode>(true));
+                }
+                leavesByDepth.get(depth + leafDepth).add(leaf.data);
+            }
+        };
+        walk(node, search);
+        search.finish("index");
+    }
+
     /**
      * Prints all valid paths from the root to the leaf nodes
      * where the nodes are at the last level and life points are sufficient
+     * Each path is written as soon as it is found through a buffered writer
      */
     public void printAvailablePaths() {
-        List<MazeNode> currentPath = new ArrayList<>();
-        List<String> allPaths = new ArrayList<>();
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        printAvailablePaths(out);
+        out.flush();
+    }
+
+    /**
+     * Writes all valid paths to the specified writer, one path per line, 
+     * as they are found. The writer is not flushed or closed
+     *
+     * @param out the writer to write the paths to
+     */
+    public void printAvailablePaths(PrintWriter out) {
+        forEachAvailablePath(path -> {
+            for (MazeNode node : path) {
+                out.write(node.getLabel());
+                out.write(' ');
+            }
+            out.println();
+        });
+    }
 
-        // Start the recursive collection of valid paths
-        collectPaths(this.root, currentPath, 0, allPaths, this.root.height);
+    /**
+     * Writes all valid paths to the specified writer like printAvailablePaths, 
+     * but searches the maze in parallel on the given pool
+     *
+     * @param out the writer to write the paths to
+     * @param pool the pool that runs the search
+     * @param threshold subtrees with at most this many nodes are searched sequentially
+     */
+    public void printAvailablePaths(PrintWriter out, ForkJoinPool pool, int threshold) {
+        forEachAvailablePath(path -> {
+            for (MazeNode node : path) {
+                out.write(node.getLabel());
+                out.write(' ');
+            }
+            out.println();
+        }, pool, threshold);
+    }
+
+    /**
+     * Returns the number of valid paths, the number of lines printAvailablePaths 
+     * would print. Uses the path index if it is enabled, and otherwise one search 
+     * that builds no paths and allocates nothing per node
+     *
+     * @return the number of exits that can be reached
+     */
+    public long countAvailablePaths() {
+        if (root == null) {
+            return 0;
+        }
+        int height = root.height;
+        if (leavesByDepth != null) {
+            return height - 1 < leavesByDepth.size() ? leavesByDepth.get(height - 1).size() : 0;
+        }
+
+        long[] count = new long[1];
+        searchExits(root, 0, height, null, (exit, lifePoints) -> count[0]++, "count");
+        return count[0];
+    }
+
+    /**
+     * Passes every exit that can be reached, together with the life points left 
+     * at the exit, to the specified action in the order printAvailablePaths prints 
+     * the paths. Like countAvailablePaths it builds no paths
+     *
+     * @param action the action to run for each exit and its remaining life points
+     */
+    public void availableExits(ObjIntConsumer<MazeNode> action) {
+        if (root == null) {
+            return;
+        }
+        searchExits(root, 0, root.height, null, (exit, lifePoints) -> action.accept(exit.data, lifePoints), 
+                    "exits");
+    }
+
+    /**
+     * Passes every valid path, from the root to the exit, to the specified action 
+     * in the same order as the sequential search, but searches the maze in parallel
+     * Subtrees larger than threshold are split into one task per child. Every task 
+     * carries its own life points and collects the exits of its subtree, which are 
+     * joined in left to right order. The paths are then rebuilt from the parent 
+     * links and passed to the action on the calling thread
+     *
+     * @param action the action to run for each path
+     * @param pool the pool that runs the search
+     * @param threshold subtrees with at most this many nodes are searched sequentially
+     * @throws IllegalArgumentException if threshold is less than one
+     */
+    public void forEachAvailablePath(Consumer<List<MazeNode>> action, ForkJoinPool pool, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be at least one");
+        }
 
-        if (!allPaths.isEmpty()) {
-            for (String path : allPaths) {
-                System.out.println(path);
+        if (root == null) {
+            return;
+        }
+
+        if (leavesByDepth != null) {
+            forEachAvailablePath(action);
+            return;
+        }
+
+        List<BST<MazeNode>.Node> exits = pool.invoke(new ExitSearch(root, 0, root.height, threshold));
+
+        List<MazeNode> path = new ArrayList<>();
+        List<MazeNode> pathView = Collections.unmodifiableList(path);
+        for (BST<MazeNode>.Node node : exits) {
+            path.clear();
+            for (; node != null; node = node.parent) {
+                path.add(node.data);
             }
+            Collections.reverse(path);
+            action.accept(pathView);
         }
     }
 
     /**
-     * Recursive helper to collect valid paths from root to leaves
+     * Passes every valid path, from the root to the exit, to the specified action 
+     * in the order printAvailablePaths prints them. The same read-only list is 
+     * reused for every path and changes once the action returns, so an action 
+     * that wants to keep a path has to copy it. Memory use depends on the height 
+     * of the maze, not on the number of exits
      *
-     * @param node the current node in the tree
-     * @param currentPath the list of MazeNodes in the current path
-     * @param lifePoints accumulated life points
-     * @param allPaths the list of all valid paths as strings
-     * @param currentHeight the current height of the node
+     * @param action the action to run for each path
      */
-    private void collectPaths(BST.Node node, List<MazeNode> currentPath, 
-    int lifePoints, List<String> allPaths, int currentHeight) {
-        if (node == null) {
+    public void forEachAvailablePath(Consumer<List<MazeNode>> action) {
+        if (root == null) {
             return;
         }
 
-        MazeNode mazeNode = (MazeNode) node.data;
-        lifePoints += mazeNode.getLifePoints();
-        currentPath.add((MazeNode) node.data);
+        if (leavesByDepth != null) {
+            List<MazeNode> currentPath = new ArrayList<>();
+            forEachIndexedPath(currentPath, Collections.unmodifiableList(currentPath), action);
+            return;
+        }
+
+        // Start the search for valid paths
+        collectPaths(this.root, action, this.root.height);
+    }
 
-        if (lifePoints <= 0 ) {
-            currentPath.remove(currentPath.size() - 1);
+    /**
+     * Passes the available paths from the path index to the action. The exits 
+     * are the indexed leaves on the last level, in label order, which is also 
+     * the left to right order in which the search would find them
+     *
+     * @param path the list to hold the current path
+     * @param pathView read-only view of path that is passed to the action
+     * @param action the action to run for each path
+     */
+    private void forEachIndexedPath(List<MazeNode> path, List<MazeNode> pathView, 
+    Consumer<List<MazeNode>> action) {
+        int depth = root.height - 1;
+        if (depth >= leavesByDepth.size()) {
             return;
         }
 
-        //check if this is a leaf node and if the current height is 1
-        if (node.left == null && node.right == null) {
-            if (currentHeight == 1) {
-                allPaths.add(formatPath(currentPath));
+        for (MazeNode exit : leavesByDepth.get(depth)) {
+            //find the leaf, then follow the parent links back up to the root
+            BST<MazeNode>.Node node = root;
+            while (node.data != exit) {
+                if (node.data.compareTo(exit) > 0) {
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
             }
-        } else {
-            //recursive call into left and right children, passing the updated height
-            collectPaths(node.left, currentPath, lifePoints - 1, allPaths, currentHeight - 1);
-            collectPaths(node.right, currentPath, lifePoints - 1, allPaths, currentHeight - 1);
+
+            path.clear();
+            for (; node != null; node = node.parent) {
+                path.add(node.data);
+            }
+            Collections.reverse(path);
+            action.accept(pathView);
         }
+    }
+
+    /**
+     * Helper that searches the maze for valid paths from root to leaves
+     *
+     * @param start the root of the maze
+     * @param action the action to run for each valid path
+     * @param height the height of the maze
+     */
+    private void collectPaths(BST<MazeNode>.Node start, Consumer<List<MazeNode>> action, int height) {
+        MazeNode[] path = new MazeNode[height];
+        int[] length = new int[1];
+        //read-only view of the current path that is passed to the action
+        List<MazeNode> pathView = new AbstractList<MazeNode>() {
+            @Override
+            public MazeNode get(int index) {
+                Objects.checkIndex(index, length[0]);
+                return path[index];
+            }
 
-        //backtrack
-        currentPath.remove(currentPath.size() - 1);
+            @Override
+            public int size() {
+                return length[0];
+            }
+        };
+        searchExits(start, 0, height, path, (exit, lifePoints) -> {
+            length[0] = height;
+            action.accept(pathView);
+        }, "paths");
     }
 
     /**
-    * Formats a list of MazeNodes into a string representation of the path
-    *
-    * @param path the list of MazeNodes in the path
-    * @return a formatted string of the path
-    */
-    private String formatPath(List<MazeNode> path) {
-        String result = "";
-        for (MazeNode node : path) {
-            result += node.getLabel() + " ";
+     * Receives the exits found by searchExits
+     */
+    private interface ExitAction {
+        /**
+         * Called for every exit that can be reached
+         *
+         * @param exit the exit leaf
+         * @param lifePoints the life points left after the exit
+         */
+        void accept(BST<MazeNode>.Node exit, int lifePoints);
+    }
+
+    /**
+     * Sequential search for the exits below a node, the one loop behind printAvailablePaths, 
+     * countAvailablePaths, availableExits and the subtrees of the parallel search. Follows 
+     * the rules of LeafSearch, and skips every subtree whose deepest leaves are not on the 
+     * last level or that cannot be survived with the life points on arrival, see 
+     * updateSummary. Unlike a walk with a visitor it keeps its own stack in arrays and 
+     * makes no call per node, only one per exit, which keeps it as fast as a plain 
+     * recursion on mazes where nothing can be skipped
+     *
+     * @param start the root of the subtree to search
+     * @param lifePoints life points on arrival at start
+     * @param exitHeight the height start needs to be on the path to the last level
+     * @param path array that gets the maze nodes of the current path, by depth below 
+     *             start, or null if the paths are not needed
+     * @param action the action to run for each exit
+     * @param kind what the search looks for, reported to MazeMetrics
+     */
+    private void searchExits(BST<MazeNode>.Node start, int lifePoints, int exitHeight, 
+                             MazeNode[] path, ExitAction action, String kind) {
+        MazeSearchEvent event = null;
+        long visited = 0;
+        long prunedByLife = 0;
+        long prunedByBound = 0;
+        long rejected = 0;
+        long exits = 0;
+        if (MazeMetrics.ENABLED) {
+            event = new MazeSearchEvent();
+            event.begin();
+        }
+
+        //a node waits on the stack together with the life points on arrival and its depth;
+        //only nodes above the last level push children, so the stack never holds more
+        //than one waiting right child per level and the two children on top
+        BST<MazeNode>.Node[] nodeStack = newNodeArray(exitHeight + 1);
+        int[] lifeStack = new int[exitHeight + 1];
+        int[] depthStack = new int[exitHeight + 1];
+        nodeStack[0] = start;
+        lifeStack[0] = lifePoints;
+        int top = 1;
+        while (top > 0) {
+            top--;
+            BST<MazeNode>.Node node = nodeStack[top];
+            nodeStack[top] = null;
+            int depth = depthStack[top];
+            int arrival = lifeStack[top];
+            if (MazeMetrics.ENABLED) {
+                visited++;
+            }
+
+            int life = arrival + node.data.getLifePoints();
+            if (life <= 0) {
+                if (MazeMetrics.ENABLED) {
+                    prunedByLife++;
+                }
+                continue;
+            }
+            BST<MazeNode>.Node left = node.left;
+            BST<MazeNode>.Node right = node.right;
+            if (depth + node.height != exitHeight || arrival < node.summary) {
+                if (MazeMetrics.ENABLED) {
+                    //a leaf that survives the life points can only fail by its level
+                    if (left == null && right == null) {
+                        rejected++;
+                    } else {
+                        prunedByBound++;
+                    }
+                }
+                continue;
+            }
+            if (path != null) {
+                path[depth] = node.data;
+            }
+
+            if (left == null && right == null) {
+                //the height check above only lets leaves on the last level get here
+                if (MazeMetrics.ENABLED) {
+                    exits++;
+                }
+                action.accept(node, life);
+                continue;
+            }
+
+            //the left subtree goes on top of the stack, so it is searched first
+            if (right != null) {
+                nodeStack[top] = right;
+                lifeStack[top] = life - 1;
+                depthStack[top] = depth + 1;
+                top++;
+            }
+            if (left != null) {
+                nodeStack[top] = left;
+                lifeStack[top] = life - 1;
+                depthStack[top] = depth + 1;
+                top++;
+            }
+        }
+
+        if (MazeMetrics.ENABLED) {
+            MazeMetrics.recordSearch(event, kind, visited, prunedByLife, prunedByBound, rejected, exits);
+        }
+    }
+
+    /**
+     * Visitor that keeps track of the life points along the current path. It skips 
+     * the subtree below any node at which the life points drop to zero or below, 
+     * and reports every leaf that is reached with positive life points, on any level
+     * The search for exits on the last level is searchExits
+     */
+    private abstract class LeafSearch extends Visitor {
+        private int lifePoints; //life points after the current node
+
+        //counters for MazeMetrics, only used if it is enabled
+        private MazeSearchEvent event;
+        private long visited;
+        private long prunedByLife;
+
+        /**
+         * Constructs a search for a walk that starts with the given life points
+         *
+         * @param lifePoints life points on arrival at the start of the walk
+         */
+        LeafSearch(int lifePoints) {
+            //moving to the start node costs no life point, so make up for the one entering it takes
+            this.lifePoints = lifePoints + 1;
+            if (MazeMetrics.ENABLED) {
+                event = new MazeSearchEvent();
+                event.begin();
+            }
+        }
+
+        /**
+         * Reports the counters of this search to MazeMetrics if it is enabled
+         *
+         * @param kind what the search looked for
+         */
+        void finish(String kind) {
+            if (MazeMetrics.ENABLED) {
+                MazeMetrics.recordSearch(event, kind, visited, prunedByLife, 0, 0, 0);
+            }
+        }
+
+        /**
+         * Called for every leaf that is reached with positive life points
+         *
+         * @param leaf the leaf reached
+         * @param depth the depth of leaf below the start of the walk
+         */
+        protected abstract void reached(BST<MazeNode>.Node leaf, int depth);
+
+        @Override
+        protected boolean enter(BST<MazeNode>.Node node, int depth) {
+            if (MazeMetrics.ENABLED) {
+                visited++;
+            }
+            //one life point to get here, then collect the life points of the node
+            lifePoints += node.data.getLifePoints() - 1;
+            if (lifePoints <= 0) {
+                if (MazeMetrics.ENABLED) {
+                    prunedByLife++;
+                }
+                return false;
+            }
+
+            if (node.left == null && node.right == null) {
+                reached(node, depth);
+            }
+            return true;
+        }
+
+        @Override
+        protected void leave(BST<MazeNode>.Node node, int depth) {
+            lifePoints -= node.data.getLifePoints() - 1;
+        }
+    }
+
+    /**
+     * Fork/join task that finds the exit leaves of a subtree, in left to right order
+     */
+    private class ExitSearch extends RecursiveTask<List<BST<MazeNode>.Node>> {
+        private static final long serialVersionUID = 1L;
+
+        private final BST<MazeNode>.Node node;
+        private final int lifePoints;
+        private final int currentHeight;
+        private final int threshold;
+
+        /**
+         * Constructs a task for the subtree rooted at node
+         *
+         * @param node the root of the subtree
+         * @param lifePoints life points on arrival at node
+         * @param currentHeight the height a node needs at this level to be on the last level
+         * @param threshold subtrees with at most this many nodes are searched sequentially
+         */
+        ExitSearch(BST<MazeNode>.Node node, int lifePoints, int currentHeight, int threshold) {
+            this.node = node;
+            this.lifePoints = lifePoints;
+            this.currentHeight = currentHeight;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected List<BST<MazeNode>.Node> compute() {
+            List<BST<MazeNode>.Node> exits = new ArrayList<>();
+            //tasks forked for the left subtrees on the way down, in left to right order
+            List<ExitSearch> forked = new ArrayList<>();
+
+            //go down one child per step in a loop instead of a call per level, so 
+            //that a long spine of large subtrees cannot overflow the call stack
+            BST<MazeNode>.Node current = node;
+            int life = lifePoints;
+            int height = currentHeight;
+            while (current != null && current.height == height && life >= current.summary) {
+                if (current.size <= threshold) {
+                    collectExits(current, life, height, exits);
+                    break;
+                }
+
+                int remaining = life + current.data.getLifePoints();
+                if (remaining <= 0) {
+                    break;
+                }
+
+                //the left subtree goes to a forked task if the search continues to the 
+                //right, a subtree this large always has at least one child
+                BST<MazeNode>.Node next = current.right;
+                if (next == null) {
+                    next = current.left;
+                } else if (current.left != null) {
+                    ExitSearch left = new ExitSearch(current.left, remaining - 1, height - 1, threshold);
+                    left.fork();
+                    forked.add(left);
+                }
+                current = next;
+                life = remaining - 1;
+                height--;
+            }
+
+            //exits of the left subtrees come before the exits found at the end of the spine
+            if (forked.isEmpty()) {
+                return exits;
+            }
+            //joined last forked first, which a worker can take back from its own queue
+            List<List<BST<MazeNode>.Node>> results = new ArrayList<>(Collections.nCopies(forked.size(), null));
+            for (int i = forked.size() - 1; i >= 0; i--) {
+                results.set(i, forked.get(i).join());
+            }
+            List<BST<MazeNode>.Node> ordered = new ArrayList<>();
+            for (List<BST<MazeNode>.Node> result : results) {
+                ordered.addAll(result);
+            }
+            ordered.addAll(exits);
+            return ordered;
+        }
+
+        /**
+         * Sequential search that collects the exit leaves of a subtree
+         *
+         * @param node the root of the subtree
+         * @param lifePoints life points on arrival at node
+         * @param currentHeight the height a node needs at this level to be on the last level
+         * @param exits the list the exit leaves are added to
+         */
+        private void collectExits(BST<MazeNode>.Node node, int lifePoints, int currentHeight, 
+        List<BST<MazeNode>.Node> exits) {
+            searchExits(node, lifePoints, currentHeight, null, (exit, life) -> exits.add(exit), "parallel");
         }
-    
-        return result;
     }
 }
@@ -0,0 +1,354 @@
+package project5;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+* Solves many maze files in one JVM
+* Every file goes through a pipeline of stages: reading and parsing, and later writing
+* the results, run on I/O threads, while building the maze and searching its paths
+* run on a fixed pool with one thread per core. The I/O threads are virtual threads
+* on JDKs that have them and a cached pool of platform threads otherwise. At most
+* a fixed number of files are in the pipeline at once, so a large batch does not
+* read more mazes than it can solve
+*
+* For every input file the batch writes NAME.out with exactly what a single run of
+* BinaryTreeMaze prints for it, and NAME.err with what it would print to the error
+* stream, if anything. A file that cannot be read or solved fails on its own, the
+* rest of the batch goes on
+*
+* @author Carsten Kaiser
+*/
+public class MazeBatch {
+    private final Path outputDirectory;
+    private final boolean balanced;
+    private final boolean bulk;
+    private final int cpuThreads;
+    private final int maxInFlight;
+
+    /**
+    * Constructs a batch that writes its results to the specified directory
+    *
+    * @param outputDirectory the directory for the result files, created if needed
+    * @param balanced true to build balanced mazes, like --balanced
+    * @param bulk true to bulk-build the mazes, like --bulk
+    * @param cpuThreads number of threads that build and solve mazes
+    * @param maxInFlight most files in the pipeline at the same time
+    */
+    public MazeBatch(Path outputDirectory, boolean balanced, boolean bulk, int cpuThreads, int maxInFlight) {
+        if (cpuThreads < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Thread count and files in flight must be at least 1");
+        }
+        this.outputDirectory = outputDirectory;
+        this.balanced = balanced;
+        this.bulk = bulk;
+        this.cpuThreads = cpuThreads;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+    * Returns the input files named by the arguments: files as they are,
+    * and the regular files directly inside directories, sorted by name
+    *
+    * @param arguments file and directory names
+    * @return inputs the files to solve
+    * @throws IOException if a directory cannot be listed
+    */
+    public static List<Path> inputFiles(List<String> arguments) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        for (String argument : arguments) {
+            Path path = new File(argument).toPath();
+            if (Files.isDirectory(path)) {
+                List<Path> files = new ArrayList<>();
+                try (var entries = Files.list(path)) {
+                    entries.filter(Files::isRegularFile).forEach(files::add);
+                }
+                Collections.sort(files);
+                inputs.addAll(files);
+            } else {
+                inputs.add(path);
+            }
+        }
+        return inputs;
+    }
+
+    /**
+    * Solves all files and waits until every result is written
+    *
+    * @param inputs the maze files
+    * @return results one result per input, in input order
+    * @throws IOException if the output directory cannot be created
+    * @throws InterruptedException if the thread is interrupted while waiting
+    */
+    public List<Result> run(List<Path> inputs) throws IOException, InterruptedException {
+        Files.createDirectories(outputDirectory);
+
+        ExecutorService io = newIoExecutor();
+        ExecutorService cpu = Executors.newFixedThreadPool(cpuThreads);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<CompletableFuture<Result>> futures = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+
+        try {
+            for (Path input : inputs) {
+                //backpressure: wait until one of the files in the pipeline is done
+                inFlight.acquire();
+
+                long start = System.nanoTime();
+                String name = String.valueOf(input.getFileName());
+                if (!names.add(name)) {
+                    inFlight.release();
+                    futures.add(CompletableFuture.completedFuture(new Result(input, null, 0,
+                        "Error: another input is also named "+name+", its results would be overwritten.\n",
+                        System.nanoTime() - start)));
+                    continue;
+                }
+
+                Job job = new Job(input, outputDirectory.resolve(name + ".out"),
+                                  outputDirectory.resolve(name + ".err"));
+                CompletableFuture<Result> future = CompletableFuture
+                    .supplyAsync(job::read, io)
+                    .thenApplyAsync(Job::solve, cpu)
+                    .thenApplyAsync(Job::write, io)
+                    .handle((exits, failure) -> {
+                        String error = failure == null ? null : job.fail(failure);
+                        inFlight.release();
+                        long nanos = System.nanoTime() - start;
+                        return error == null ? new Result(input, job.output, exits, null, nanos)
+                                             : new Result(input, null, 0, error, nanos);
+                    });
+                futures.add(future);
+            }
+
+            List<Result> results = new ArrayList<>();
+            for (CompletableFuture<Result> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        } finally {
+            io.shutdown();
+            cpu.shutdown();
+        }
+    }
+
+    /**
+    * Returns an executor that starts a virtual thread per task if the JDK supports
+    * them, and otherwise a cached pool of daemon platform threads
+    *
+    * @return the executor for the I/O stages
+    */
+    static ExecutorService newIoExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "maze-batch-io");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+    * One file going through the pipeline. Every stage passes its result to the next,
+    * and what a single run would print to the error stream is collected on the way
+    */
+    private class Job {
+        private final Path input;
+        private final Path output;
+        private final Path errorOutput;
+        private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        private List<MazeNode> nodes;
+        private byte[] paths;
+        private long exits;
+
+        Job(Path input, Path output, Path errorOutput) {
+            this.input = input;
+            this.output = output;
+            this.errorOutput = errorOutput;
+        }
+
+        /**
+        * Reads and parses the file, reporting problems like BinaryTreeMaze
+        *
+        * @return this job
+        */
+        Job read() {
+            PrintStream err = new PrintStream(errors, true);
+            File file = input.toFile();
+            nodes = new ArrayList<>();
+            if (!file.exists()) {
+                err.println("Error: the file "+file.getAbsolutePath()+" does not exist.\n");
+                throw new CompletionException(new IOException(file.getAbsolutePath()+" does not exist"));
+            }
+            if (!file.canRead()) {
+                err.println("Error: the file "+file.getAbsolutePath()+" cannot be opened for reading.\n");
+                throw new CompletionException(new IOException(file.getAbsolutePath()+" cannot be read"));
+            }
+            try {
+                new MazeLoader(err).load(input, nodes::add);
+            } catch (IOException e) {
+                err.println("Error: the file "+file.getAbsolutePath()+" cannot be opened for reading.\n");
+                throw new CompletionException(e);
+            }
+            return this;
+        }
+
+        /**
+        * Builds the maze and writes its paths into memory
+        *
+        * @return this job
+        */
+        Job solve() {
+            Maze maze = new Maze(balanced);
+            maze.load(nodes, !bulk);
+            nodes = null;
+
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(buffer)));
+            maze.printAvailablePaths(out);
+            out.flush();
+            paths = buffer.toByteArray();
+
+            //every path ends its own line, and labels never contain a line break
+            for (byte b : paths) {
+                if (b == '\n') {
+                    exits++;
+                }
+            }
+            return this;
+        }
+
+        /**
+        * Writes the paths and the error output of the file
+        *
+        * @return exits the number of paths written
+        */
+        long write() {
+            try {
+                Files.write(output, paths);
+                if (errors.size() > 0) {
+                    Files.write(errorOutput, errors.toByteArray());
+                } else {
+                    Files.deleteIfExists(errorOutput);
+                }
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            return exits;
+        }
+
+        /**
+        * Cleans up after a failed stage: removes the paths of an earlier batch and
+        * keeps what a single run would have printed to the error stream
+        *
+        * @param failure the exception of the failed stage
+        * @return error the reason the file failed
+        */
+        String fail(Throwable failure) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                              ? failure.getCause() : failure;
+            try {
+                Files.deleteIfExists(output);
+                if (errors.size() > 0) {
+                    Files.write(errorOutput, errors.toByteArray());
+                }
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+            return String.valueOf(cause);
+        }
+    }
+
+    /**
+    * Outcome of one input file
+    */
+    public static class Result {
+        private final Path input;
+        private final Path output;
+        private final long exits;
+        private final String error;
+        private final long elapsedNanos;
+
+        Result(Path input, Path output, long exits, String error, long elapsedNanos) {
+            this.input = input;
+            this.output = output;
+            this.exits = exits;
+            this.error = error;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+        * Returns the maze file
+        *
+        * @return input the input file
+        */
+        public Path getInput() {
+            return input;
+        }
+
+        /**
+        * Returns the file the paths were written to
+        *
+        * @return output the result file, or null if the input failed
+        */
+        public Path getOutput() {
+            return output;
+        }
+
+        /**
+        * Returns the number of paths found
+        *
+        * @return exits the number of paths
+        */
+        public long getExits() {
+            return exits;
+        }
+
+        /**
+        * Returns why the input failed
+        *
+        * @return error the reason, or null if the input was solved
+        */
+        public String getError() {
+            return error;
+        }
+
+        /**
+        * Returns the time from entering the pipeline to the written result
+        *
+        * @return elapsedNanos the time in nanoseconds
+        */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+        * Returns true if the input was solved and its results written
+        *
+        * @return true if there was no error
+        */
+        public boolean isSolved() {
+            return error == null;
+        }
+    }
+}
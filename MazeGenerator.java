@@ -0,0 +1,424 @@
+package project5;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+* Generates maze files in the LABEL POINTS format read by BinaryTreeMaze
+* The lines are written to the output as they are generated, so the size of the
+* maze is only limited by the disk
+*
+* Labels are fixed-length numbers written in the alphabet, so sorting the labels
+* gives the order of the numbers 0..nodes-1. The shape of the maze comes from the
+* order the numbers are written in:
+*   random   - a pseudo-random permutation, like a random insert order
+*   sorted   - ascending, the maze becomes a single path to the right
+*   zigzag   - smallest, largest, second smallest, ..., a single zig-zag path
+*   complete - parents before children of a complete binary tree, every level
+*              except the last is full and the last is filled from the left
+*
+* Life points are drawn uniformly from the points range. To reach the exit density,
+* each node is instead a trap with a probability chosen so that the given fraction
+* of the paths to the last level have no trap. With a points range above zero the
+* traps are the only way to lose, so the density is exact on average for the sorted,
+* zigzag and complete shapes and approximate for random, whose height is estimated
+*
+* Usage: java project5.MazeGenerator [options]
+*   --nodes N          number of nodes, up to 100000000, default 1000
+*   --alphabet CHARS   characters used in the labels, at least two, default A-Z
+*   --length L         label length, default the shortest that fits all nodes
+*   --shape S          random, sorted, zigzag or complete, default random
+*   --points MIN:MAX   range of the life points, default 1:3
+*   --density D        fraction of paths to the last level that are open, default 0.5
+*   --seed S           seed of the random numbers, default 1
+*   --output FILE      file to write, default the standard output
+*
+* @author Carsten Kaiser
+*/
+public class MazeGenerator {
+    private static final long MAX_NODES = 100_000_000L;
+    //the life points of a trap, lower than anything a hero can collect on the way
+    private static final int TRAP = Integer.MIN_VALUE / 2;
+
+    private final long nodes;
+    private final byte[][] symbols;
+    private final int length;
+    private final int minPoints;
+    private final int maxPoints;
+    private final double trapChance;
+    private final SplittableRandom random;
+    private final OutputStream out;
+    private final byte[] line;
+    private final int[] digits;
+
+    /**
+    * Constructs a generator that writes to the specified stream
+    *
+    * @param nodes number of nodes
+    * @param alphabet characters used in the labels, at least two, sorted and without duplicates
+    * @param length label length
+    * @param minPoints lowest life points of a normal node
+    * @param maxPoints highest life points of a normal node
+    * @param trapChance probability that a node is a trap
+    * @param seed seed of the random numbers
+    * @param out stream to write the lines to
+    * @throws IllegalArgumentException if the alphabet has fewer than two characters
+    */
+    public MazeGenerator(long nodes, String alphabet, int length, int minPoints, int maxPoints,
+                         double trapChance, long seed, OutputStream out) {
+        if (alphabet.length() < 2) {
+            throw new IllegalArgumentException("The alphabet must have at least two characters");
+        }
+        this.nodes = nodes;
+        this.length = length;
+        this.minPoints = minPoints;
+        this.maxPoints = maxPoints;
+        this.trapChance = trapChance;
+        this.random = new SplittableRandom(seed);
+        this.out = out;
+
+        //the UTF-8 bytes of every symbol, so that labels are written without encoding
+        symbols = new byte[alphabet.length()][];
+        int longest = 0;
+        for (int i = 0; i < alphabet.length(); i++) {
+            symbols[i] = String.valueOf(alphabet.charAt(i)).getBytes(StandardCharsets.UTF_8);
+            longest = Math.max(longest, symbols[i].length);
+        }
+        line = new byte[length * longest + 16];
+        digits = new int[length];
+    }
+
+    public static void main(String[] args) throws IOException {
+        long nodes = 1000;
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+        int length = 0;
+        String shape = "random";
+        int minPoints = 1;
+        int maxPoints = 3;
+        double density = 0.5;
+        long seed = 1;
+        String output = null;
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                usageError("missing value for "+args[i]);
+            }
+            String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--nodes":
+                        nodes = Long.parseLong(value);
+                        break;
+                    case "--alphabet":
+                        alphabet = value;
+                        break;
+                    case "--length":
+                        length = Integer.parseInt(value);
+                        break;
+                    case "--shape":
+                        shape = value;
+                        break;
+                    case "--points":
+                        int colon = value.indexOf(':');
+                        if (colon < 0) {
+                            usageError("--points expects MIN:MAX");
+                        }
+                        minPoints = Integer.parseInt(value.substring(0, colon));
+                        maxPoints = Integer.parseInt(value.substring(colon + 1));
+                        break;
+                    case "--density":
+                        density = Double.parseDouble(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--output":
+                        output = value;
+                        break;
+                    default:
+                        usageError("unknown option "+args[i]);
+                }
+            } catch (NumberFormatException e) {
+                usageError("invalid value "+value+" for "+args[i]);
+            }
+        }
+
+        if (nodes < 0 || nodes > MAX_NODES) {
+            usageError("--nodes must be between 0 and "+MAX_NODES);
+        }
+        if (minPoints > maxPoints) {
+            usageError("--points MIN must not be larger than MAX");
+        }
+        if (density < 0 || density > 1) {
+            usageError("--density must be between 0 and 1");
+        }
+        if (!Arrays.asList("random", "sorted", "zigzag", "complete").contains(shape)) {
+            usageError("unknown shape "+shape);
+        }
+
+        //sorting the alphabet makes the order of the labels the order of the numbers
+        char[] chars = alphabet.toCharArray();
+        Arrays.sort(chars);
+        StringBuilder sorted = new StringBuilder();
+        for (int i = 0; i < chars.length; i++) {
+            if (Character.isWhitespace(chars[i]) || Character.isSurrogate(chars[i])) {
+                usageError("the alphabet must not contain whitespace or surrogate characters");
+            }
+            if (i == 0 || chars[i] != chars[i - 1]) {
+                sorted.append(chars[i]);
+            }
+        }
+        alphabet = sorted.toString();
+        if (alphabet.length() < 2) {
+            //fixed-length labels over one character would all be the same
+            usageError("the alphabet must have at least two different characters");
+        }
+
+        int needed = labelLength(nodes, alphabet.length());
+        if (length == 0) {
+            length = needed;
+        } else if (length < needed) {
+            usageError("labels of length "+length+" can not tell "+nodes+" nodes apart");
+        }
+
+        double trapChance = trapChance(density, estimatedHeight(shape, nodes));
+        OutputStream out = output == null ? System.out : new FileOutputStream(output);
+        try (OutputStream buffered = new BufferedOutputStream(out, 1 << 16)) {
+            MazeGenerator generator = new MazeGenerator(nodes, alphabet, length, minPoints, maxPoints,
+                                                        trapChance, seed, buffered);
+            generator.generate(shape);
+        }
+    }
+
+    /**
+    * Writes all nodes in the order that gives the specified shape
+    *
+    * @param shape random, sorted, zigzag or complete
+    * @throws IOException if writing fails
+    */
+    public void generate(String shape) throws IOException {
+        switch (shape) {
+            case "sorted":
+                for (long i = 0; i < nodes; i++) {
+                    write(i);
+                }
+                break;
+            case "zigzag":
+                for (long low = 0, high = nodes - 1; low <= high; low++, high--) {
+                    write(low);
+                    if (low != high) {
+                        write(high);
+                    }
+                }
+                break;
+            case "complete":
+                writeComplete(0, nodes);
+                break;
+            case "random":
+                writeRandom();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        out.flush();
+    }
+
+    /**
+    * Writes the numbers first..first+count-1 as a complete binary tree, the root
+    * first, then the left subtree and then the right subtree
+    * The recursion is only as deep as the tree, at most 27 levels for 1e8 nodes
+    *
+    * @param first smallest number of the subtree
+    * @param count number of nodes in the subtree
+    * @throws IOException if writing fails
+    */
+    private void writeComplete(long first, long count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+
+        //the full levels above the last hold 2^levels - 1 nodes, the left subtree
+        //gets half of them and as much of the last level as fits in its half
+        int levels = 63 - Long.numberOfLeadingZeros(count + 1);
+        long full = (1L << levels) - 1;
+        long last = count - full;
+        long half = 1L << (levels - 1);
+        long leftCount = (full - 1) / 2 + Math.min(last, half);
+
+        write(first + leftCount);
+        writeComplete(first, leftCount);
+        writeComplete(first + leftCount + 1, count - leftCount - 1);
+    }
+
+    /**
+    * Writes the numbers 0..nodes-1 in a pseudo-random order without storing them
+    * A seeded bijection on the smallest power of two range that holds all numbers
+    * is applied to every number in the range, and results outside 0..nodes-1 are
+    * mapped again until they fall inside (cycle walking), which keeps it a permutation
+    *
+    * @throws IOException if writing fails
+    */
+    private void writeRandom() throws IOException {
+        int bits = Math.max(64 - Long.numberOfLeadingZeros(Math.max(nodes - 1, 1)), 2);
+        long mask = (1L << bits) - 1;
+        long[] keys = new long[4];
+        for (int round = 0; round < keys.length; round++) {
+            keys[round] = random.nextLong();
+        }
+
+        for (long i = 0; i < nodes; i++) {
+            long x = i;
+            do {
+                x = permute(x, bits, mask, keys);
+            } while (x >= nodes);
+            write(x);
+        }
+    }
+
+    /**
+    * A bijection on 0..mask: every step, adding a key, multiplying by an odd
+    * number and xor with the value shifted right, can be undone modulo 2^bits
+    *
+    * @param x the number to map
+    * @param bits number of bits of the range
+    * @param mask 2^bits - 1
+    * @param keys the round keys
+    * @return the mapped number
+    */
+    private static long permute(long x, int bits, long mask, long[] keys) {
+        int shift = Math.max(bits / 2, 1);
+        for (long key : keys) {
+            x = (x + key) & mask;
+            x = (x * (key | 1)) & mask;
+            x ^= x >>> shift;
+        }
+        return x;
+    }
+
+    /**
+    * Writes one line with the label of the number and random life points
+    *
+    * @param number the number of the node, its position in label order
+    * @throws IOException if writing fails
+    */
+    private void write(long number) throws IOException {
+        //the label is the number in base alphabet size, most significant digit first
+        int base = symbols.length;
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (int) (number % base);
+            number /= base;
+        }
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            byte[] symbol = symbols[digits[i]];
+            System.arraycopy(symbol, 0, line, position, symbol.length);
+            position += symbol.length;
+        }
+        line[position++] = ' ';
+
+        int points;
+        if (trapChance > 0 && random.nextDouble() < trapChance) {
+            points = TRAP;
+        } else {
+            points = minPoints + (int) random.nextLong((long) maxPoints - minPoints + 1);
+        }
+        position = writeInt(points, position);
+        line[position++] = '\n';
+        out.write(line, 0, position);
+    }
+
+    /**
+    * Writes the decimal digits of an int into the line buffer
+    *
+    * @param value the number to write
+    * @param position where in the line to start
+    * @return the position after the last digit
+    */
+    private int writeInt(int value, int position) {
+        long remaining = value;
+        if (remaining < 0) {
+            line[position++] = '-';
+            remaining = -remaining;
+        }
+        int end = position + 1;
+        for (long rest = remaining / 10; rest > 0; rest /= 10) {
+            end++;
+        }
+        for (int i = end - 1; i >= position; i--) {
+            line[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        return end;
+    }
+
+    /**
+    * Returns the shortest label length that gives every node its own label
+    *
+    * @param nodes number of nodes
+    * @param base size of the alphabet, at least 2
+    * @return length the label length, at least 1
+    */
+    static int labelLength(long nodes, int base) {
+        int length = 1;
+        long labels = base;
+        while (labels < nodes) {
+            length++;
+            labels = labels > Long.MAX_VALUE / base ? Long.MAX_VALUE : labels * base;
+        }
+        return length;
+    }
+
+    /**
+    * Returns the height the maze will have, or an estimate for the random shape
+    * The expected height of a random binary search tree is about 4.311 ln n - 1.953 ln ln n
+    *
+    * @param shape random, sorted, zigzag or complete
+    * @param nodes number of nodes
+    * @return height the (estimated) number of levels
+    */
+    static double estimatedHeight(String shape, long nodes) {
+        if (nodes <= 1) {
+            return nodes;
+        }
+        switch (shape) {
+            case "sorted":
+            case "zigzag":
+                return nodes;
+            case "complete":
+                return 64 - Long.numberOfLeadingZeros(nodes);
+            default:
+                double log = Math.log(nodes);
+                return Math.max(4.311 * log - 1.953 * Math.log(Math.max(log, 1)), 1);
+        }
+    }
+
+    /**
+    * Returns the probability of a trap so that a path through height nodes has no
+    * trap with probability density, (1 - t)^height = density
+    *
+    * @param density fraction of open paths
+    * @param height number of nodes on a path
+    * @return trap probability
+    */
+    static double trapChance(double density, double height) {
+        if (height == 0 || density >= 1) {
+            return 0;
+        }
+        return 1 - Math.pow(density, 1 / height);
+    }
+
+    /**
+    * Prints a usage error and exits
+    *
+    * @param message the reason
+    */
+    private static void usageError(String message) {
+        System.err.println("Usage Error: "+message+"\n");
+        System.exit(1);
+    }
+}
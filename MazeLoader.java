@@ -0,0 +1,331 @@
+package project5;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+* Class that loads maze files in the LABEL POINTS format into a Maze
+* Maps the file into memory through a FileChannel and splits it into lines and 
+* tokens byte by byte, so no Scanner, no line Strings and no exceptions are 
+* involved. Lines are handled like BinaryTreeMaze always did: a line with fewer 
+* than two tokens is reported on the error stream, a line whose life points are 
+* not an integer is skipped, and tokens after the life points are ignored.
+* Labels are decoded as UTF-8
+*
+* @author Carsten Kaiser
+*/
+public class MazeLoader {
+    //size of the part of the file that is mapped at a time
+    private static final int CHUNK_SIZE = 1 << 30;
+
+    private final PrintStream errors;
+    private final int chunkSize;
+    private boolean skipNewline; //the chunk before ended with \r, so a \n that starts the next one belongs to it
+    private long bytes;
+    private long lines;
+    private long nodes;
+    private long malformedLines;
+    private long skippedLines;
+    private long elapsedNanos;
+
+    /**
+    * Constructs a loader that reports malformed lines on the specified stream
+    *
+    * @param errors the stream malformed lines are printed to
+    */
+    public MazeLoader(PrintStream errors) {
+        this(errors, CHUNK_SIZE);
+    }
+
+    /**
+    * Constructs a loader that maps the file in chunks of the given size, so that 
+    * tests can put line breaks on the boundaries of small chunks
+    *
+    * @param errors the stream malformed lines are printed to
+    * @param chunkSize number of bytes mapped at a time
+    */
+    MazeLoader(PrintStream errors, int chunkSize) {
+        this.errors = errors;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+    * Reads the maze file and adds its nodes to the maze in file order
+    *
+    * @param file the maze file to read
+    * @param maze the maze to add the nodes to
+    * @throws IOException if the file cannot be read
+    */
+    public void load(Path file, Maze maze) throws IOException {
+        load(file, maze::add);
+    }
+
+    /**
+    * Reads the maze file and passes its nodes to the specified action in file order
+    *
+    * @param file the maze file to read
+    * @param action the action to run for each node
+    * @throws IOException if the file cannot be read
+    */
+    public void load(Path file, Consumer<MazeNode> action) throws IOException {
+        long start = System.nanoTime();
+        skipNewline = false;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long position = 0;
+            while (position < fileSize) {
+                long length = Math.min(chunkSize, fileSize - position);
+                boolean last = position + length == fileSize;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                int consumed = parse(buffer, (int) length, last, action);
+                if (consumed == 0) {
+                    //a single line longer than a chunk, take it as it is
+                    consumed = parse(buffer, (int) length, true, action);
+                }
+                position += consumed;
+            }
+            bytes += fileSize;
+        }
+
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    /**
+    * Parses the complete lines in the buffer and passes their nodes to the action
+    *
+    * @param buffer the bytes to parse
+    * @param length number of bytes in the buffer
+    * @param last true if the buffer ends with the end of the file, so that 
+    *        a last line without a line break is complete as well
+    * @param action the action to run for each node
+    * @return the number of bytes parsed, the rest belongs to a line that continues
+    *         after the buffer
+    */
+    private int parse(MappedByteBuffer buffer, int length, boolean last, Consumer<MazeNode> action) {
+        int lineStart = 0;
+        if (skipNewline) {
+            skipNewline = false;
+            if (length > 0 && buffer.get(0) == '\n') {
+                lineStart = 1;
+            }
+        }
+        while (lineStart < length) {
+            //find the end of the line
+            int lineEnd = lineStart;
+            while (lineEnd < length && buffer.get(lineEnd) != '\n' && buffer.get(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            if (lineEnd == length && !last) {
+                return lineStart;
+            }
+
+            parseLine(buffer, lineStart, lineEnd, action);
+
+            //skip the line break, \r\n counts as one
+            int next = lineEnd + 1;
+            if (lineEnd < length && buffer.get(lineEnd) == '\r') {
+                if (lineEnd + 1 < length) {
+                    if (buffer.get(lineEnd + 1) == '\n') {
+                        next++;
+                    }
+                } else if (!last) {
+                    //the \n of a \r\n may be in the next chunk
+                    skipNewline = true;
+                }
+            }
+            lineStart = next;
+        }
+        return length;
+    }
+
+    /**
+    * Parses one line and passes its node to the action
+    *
+    * @param buffer the bytes to parse
+    * @param start index of the first byte of the line
+    * @param end index after the last byte of the line
+    * @param action the action to run for the node
+    */
+    private void parseLine(MappedByteBuffer buffer, int start, int end, Consumer<MazeNode> action) {
+        lines++;
+
+        //label token
+        int labelStart = skipWhitespace(buffer, start, end);
+        int labelEnd = skipToken(buffer, labelStart, end);
+
+        //life points token
+        int pointsStart = skipWhitespace(buffer, labelEnd, end);
+        int pointsEnd = skipToken(buffer, pointsStart, end);
+
+        if (labelStart == labelEnd || pointsStart == pointsEnd) {
+            //caused by an incomplete or miss-formatted line in the input file
+            malformedLines++;
+            errors.println(decode(buffer, start, end));
+            return;
+        }
+
+        //parse the life points by hand, rejecting anything Integer.parseInt would
+        int index = pointsStart;
+        boolean negative = false;
+        byte first = buffer.get(index);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            index++;
+            if (index == pointsEnd) {
+                skippedLines++;
+                return;
+            }
+        }
+        long value = 0;
+        for (; index < pointsEnd; index++) {
+            int digit = buffer.get(index) - '0';
+            if (digit < 0 || digit > 9) {
+                skippedLines++;
+                return;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                skippedLines++;
+                return;
+            }
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value > Integer.MAX_VALUE) {
+            skippedLines++;
+            return;
+        }
+
+        action.accept(new MazeNode(decode(buffer, labelStart, labelEnd), (int) value));
+        nodes++;
+    }
+
+    /**
+    * Returns the index of the first byte at or after start that is not whitespace
+    *
+    * @param buffer the bytes to scan
+    * @param start index to start at
+    * @param end index to stop at
+    * @return the index of the first non-whitespace byte, or end
+    */
+    private static int skipWhitespace(MappedByteBuffer buffer, int start, int end) {
+        while (start < end && isWhitespace(buffer.get(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+    * Returns the index of the first whitespace byte at or after start
+    *
+    * @param buffer the bytes to scan
+    * @param start index to start at
+    * @param end index to stop at
+    * @return the index of the first whitespace byte, or end
+    */
+    private static int skipToken(MappedByteBuffer buffer, int start, int end) {
+        while (start < end && !isWhitespace(buffer.get(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+    * Checks if a byte is an ASCII whitespace character, as Character.isWhitespace defines it
+    *
+    * @param b the byte to check
+    * @return true if b is whitespace
+    */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= 9 && b <= 13) || (b >= 28 && b <= 31);
+    }
+
+    /**
+    * Decodes a range of the buffer as UTF-8 text
+    *
+    * @param buffer the bytes to decode
+    * @param start index of the first byte
+    * @param end index after the last byte
+    * @return the decoded text
+    */
+    private static String decode(MappedByteBuffer buffer, int start, int end) {
+        byte[] text = new byte[end - start];
+        buffer.get(start, text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    /**
+    * Returns the number of bytes read so far
+    *
+    * @return bytes the number of bytes read
+    */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+    * Returns the number of lines read so far
+    *
+    * @return lines the number of lines read
+    */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+    * Returns the number of nodes parsed so far
+    *
+    * @return nodes the number of parsed nodes
+    */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+    * Returns the number of lines that had fewer than two tokens
+    *
+    * @return malformedLines the number of malformed lines
+    */
+    public long getMalformedLines() {
+        return malformedLines;
+    }
+
+    /**
+    * Returns the number of lines that were skipped because their life points were not an integer
+    *
+    * @return skippedLines the number of skipped lines
+    */
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    /**
+    * Returns the time spent loading, including the time spent adding the nodes
+    *
+    * @return elapsedNanos the elapsed time in nanoseconds
+    */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+    * Returns the loading throughput in megabytes (10^6 bytes) per second
+    *
+    * @return the throughput, zero if nothing has been loaded yet
+    */
+    public double getMegabytesPerSecond() {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        return bytes / 1e6 / (elapsedNanos / 1e9);
+    }
+}
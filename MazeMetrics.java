@@ -0,0 +1,176 @@
+package project5;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+* Counters for the hot paths of Maze, reported together with the tree counters of TreeMetrics
+* The instrumentation is off unless the JVM is started with -Dproject5.metrics=true. 
+* ENABLED is a constant, so when it is false the JIT compiler removes the guarded 
+* counting code entirely. When enabled, the counters are collected process-wide in 
+* LongAdders, the metrics are registered as a JMX MBean, and every maze search is 
+* also recorded as a MazeSearchEvent for the flight recorder
+*
+* @author Carsten Kaiser
+*/
+public final class MazeMetrics implements MazeMetricsMXBean {
+    /**
+    * True if the instrumentation is enabled, read once from the system property project5.metrics
+    */
+    public static final boolean ENABLED = TreeMetrics.ENABLED;
+
+    private static final MazeMetrics INSTANCE = new MazeMetrics();
+
+    private final LongAdder nodesVisited = new LongAdder();
+    private final LongAdder prunedByLifePoints = new LongAdder();
+    private final LongAdder prunedByBound = new LongAdder();
+    private final LongAdder leavesRejected = new LongAdder();
+    private final LongAdder exitsEmitted = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                server.registerMBean(INSTANCE, new ObjectName("project5:type=MazeMetrics"));
+            } catch (JMException e) {
+                System.err.println("Warning: the maze metrics MBean cannot be registered: "+e.getMessage());
+            }
+        }
+    }
+
+    private MazeMetrics() {
+    }
+
+    /**
+    * Returns the process-wide metrics
+    *
+    * @return the metrics
+    */
+    public static MazeMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+    * Records one maze search and commits its flight recorder event
+    *
+    * @param event the event begun when the search started
+    * @param kind what the search looked for
+    * @param visited nodes entered
+    * @param prunedByLife nodes where the life points ran out
+    * @param prunedByBound subtrees skipped by their bounds
+    * @param rejected leaves skipped because they are not on the last level
+    * @param exits exits found
+    */
+    static void recordSearch(MazeSearchEvent event, String kind, long visited, long prunedByLife, 
+                             long prunedByBound, long rejected, long exits) {
+        INSTANCE.nodesVisited.add(visited);
+        INSTANCE.prunedByLifePoints.add(prunedByLife);
+        INSTANCE.prunedByBound.add(prunedByBound);
+        INSTANCE.leavesRejected.add(rejected);
+        INSTANCE.exitsEmitted.add(exits);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.nodesVisited = visited;
+            event.prunedByLifePoints = prunedByLife;
+            event.prunedByBound = prunedByBound;
+            event.leavesRejected = rejected;
+            event.exits = exits;
+            event.commit();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public long getAdds() {
+        return TreeMetrics.adds();
+    }
+
+    @Override
+    public long getAddComparisons() {
+        return TreeMetrics.addComparisons();
+    }
+
+    @Override
+    public long getContainsCalls() {
+        return TreeMetrics.containsCalls();
+    }
+
+    @Override
+    public long getContainsComparisons() {
+        return TreeMetrics.containsComparisons();
+    }
+
+    @Override
+    public long getParentWalks() {
+        return TreeMetrics.parentWalks();
+    }
+
+    @Override
+    public long getUpdateHeightSteps() {
+        return TreeMetrics.updateHeightSteps();
+    }
+
+    @Override
+    public long getMaxDepth() {
+        return TreeMetrics.maxDepth();
+    }
+
+    @Override
+    public long getNodesVisited() {
+        return nodesVisited.sum();
+    }
+
+    @Override
+    public long getPrunedByLifePoints() {
+        return prunedByLifePoints.sum();
+    }
+
+    @Override
+    public long getPrunedByBound() {
+        return prunedByBound.sum();
+    }
+
+    @Override
+    public long getLeavesRejected() {
+        return leavesRejected.sum();
+    }
+
+    @Override
+    public long getExitsEmitted() {
+        return exitsEmitted.sum();
+    }
+
+    @Override
+    public void reset() {
+        TreeMetrics.reset();
+        nodesVisited.reset();
+        prunedByLifePoints.reset();
+        prunedByBound.reset();
+        leavesRejected.reset();
+        exitsEmitted.reset();
+    }
+
+    /**
+    * Returns the counters as one line of text
+    *
+    * @return a summary of all counters
+    */
+    @Override
+    public String toString() {
+        return "adds=" + getAdds() + " addComparisons=" + getAddComparisons() 
+            + " contains=" + getContainsCalls() + " containsComparisons=" + getContainsComparisons() 
+            + " parentWalks=" + getParentWalks() + " updateHeightSteps=" + getUpdateHeightSteps() 
+            + " maxDepth=" + getMaxDepth() + " nodesVisited=" + getNodesVisited() 
+            + " prunedByLifePoints=" + getPrunedByLifePoints() + " prunedByBound=" + getPrunedByBound() 
+            + " leavesRejected=" + getLeavesRejected() + " exits=" + getExitsEmitted();
+    }
+}
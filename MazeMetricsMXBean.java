@@ -0,0 +1,107 @@
+package project5;
+
+/**
+* Read-only view of the counters collected by MazeMetrics
+* MazeMetrics registers itself under this interface as the JMX MBean 
+* "project5:type=MazeMetrics" when the instrumentation is enabled
+*
+* @author Carsten Kaiser
+*/
+public interface MazeMetricsMXBean {
+    /**
+    * Returns true if the instrumentation is enabled, otherwise all counters stay zero
+    *
+    * @return true if counters are collected
+    */
+    boolean isEnabled();
+
+    /**
+    * Returns the number of calls to BST.add
+    *
+    * @return number of adds
+    */
+    long getAdds();
+
+    /**
+    * Returns the number of element comparisons made by BST.add
+    *
+    * @return comparisons made while adding
+    */
+    long getAddComparisons();
+
+    /**
+    * Returns the number of calls to BST.contains
+    *
+    * @return number of contains calls
+    */
+    long getContainsCalls();
+
+    /**
+    * Returns the number of element comparisons made by BST.contains
+    *
+    * @return comparisons made while searching
+    */
+    long getContainsComparisons();
+
+    /**
+    * Returns the number of parent links followed by walks of subtrees too deep for recursion
+    *
+    * @return number of steps back up to a parent
+    */
+    long getParentWalks();
+
+    /**
+    * Returns the number of nodes whose height was updated after adds and removes
+    *
+    * @return steps taken by updateHeight
+    */
+    long getUpdateHeightSteps();
+
+    /**
+    * Returns the largest depth an add or contains has gone down to
+    *
+    * @return the maximum depth reached, counted in nodes
+    */
+    long getMaxDepth();
+
+    /**
+    * Returns the number of nodes the maze searches entered
+    *
+    * @return nodes visited
+    */
+    long getNodesVisited();
+
+    /**
+    * Returns the number of nodes where a search stopped because the life points ran out
+    *
+    * @return branches pruned by life points
+    */
+    long getPrunedByLifePoints();
+
+    /**
+    * Returns the number of subtrees an exit search skipped because they can not 
+    * reach the last level or need more life points than the hero has
+    *
+    * @return subtrees pruned by their bounds
+    */
+    long getPrunedByBound();
+
+    /**
+    * Returns the number of leaves an exit search skipped because they are not on the last level
+    *
+    * @return leaves rejected by their level
+    */
+    long getLeavesRejected();
+
+    /**
+    * Returns the number of exits the maze searches found
+    *
+    * @return exits emitted
+    */
+    long getExitsEmitted();
+
+    /**
+    * Sets all counters back to zero
+    */
+    void reset();
+}
@@ -6,11 +6,19 @@ package project5;
 * implements Comparable<E> to be able to compare MazeNodes based
 * off of their labels
 *
+* Labels of up to 7 characters in the range 0-255 are also packed into a long key: 
+* one byte per character from the most significant byte down, and the length in the 
+* lowest byte. Comparing two keys as unsigned numbers gives the order of the labels, 
+* because a shorter label reads as padded with zeros, and ties go to the shorter one
+*
 * @author Carsten Kaiser
 */
-public class MazeNode implements Comparable<MazeNode>{
+public class MazeNode implements Comparable<MazeNode>, PrimitiveKeyed{
+    private static final int MAX_KEY_LENGTH = 7;
+
     private String label;
     private int lifePoints;
+    private final long key; //the label packed into a long, or NO_KEY
 
     /**
     * Constructs MazeNode with parameters label and life points
@@ -21,6 +29,29 @@ public class MazeNode implements Comparable<MazeNode>{
     public MazeNode(String label, int lifePoints){
         this.label = label;
         this.lifePoints = lifePoints;
+        this.key = encode(label);
+    }
+
+    /**
+    * Packs a short label into a key that sorts like the label
+    *
+    * @param label the label to pack
+    * @return key the packed label, or NO_KEY if it is too long or has characters above 255
+    */
+    private static long encode(String label) {
+        if (label == null || label.length() > MAX_KEY_LENGTH) {
+            return NO_KEY;
+        }
+
+        long key = 0;
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c > 0xFF) {
+                return NO_KEY;
+            }
+            key |= (long) c << (56 - 8 * i);
+        }
+        return key | label.length();
     }
 
     /**
@@ -51,9 +82,22 @@ public class MazeNode implements Comparable<MazeNode>{
     */
     @Override
     public int compareTo(MazeNode other){
+        if (key != NO_KEY && other.key != NO_KEY) {
+            return Long.compareUnsigned(key, other.key);
+        }
         return this.label.compareTo(other.label);
     }
 
+    /**
+    * Returns the label packed into a long, see the class description
+    *
+    * @return key the packed label, or NO_KEY if the label is too long to pack
+    */
+    @Override
+    public long primitiveKey(){
+        return key;
+    }
+
     /**
     * Returns a string representation of this MazeNode
     *
@@ -0,0 +1,36 @@
+package project5;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+* Flight recorder event for one search of a maze, committed by MazeMetrics.recordSearch
+* when the instrumentation is enabled. The duration covers the walk of the search
+*
+* @author Carsten Kaiser
+*/
+@Name("project5.MazeSearch")
+@Label("Maze Search")
+@Category("project5")
+@Description("One search of a maze for paths, exits or index leaves")
+class MazeSearchEvent extends jdk.jfr.Event {
+    @Label("Kind")
+    String kind;
+
+    @Label("Nodes Visited")
+    long nodesVisited;
+
+    @Label("Pruned By Life Points")
+    long prunedByLifePoints;
+
+    @Label("Pruned By Bound")
+    long prunedByBound;
+
+    @Label("Leaves Rejected")
+    long leavesRejected;
+
+    @Label("Exits")
+    long exits;
+}
@@ -0,0 +1,623 @@
+package project5;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+* Long-running server that keeps named mazes in memory and answers queries about them
+* over HTTP on the loopback interface, so that callers pay for JVM startup and for
+* building a maze once instead of on every query
+*
+* Every request names its maze with the maze parameter. The answers are plain text:
+*   /paths?maze=M              the paths BinaryTreeMaze prints for the maze, cached
+*                              by the contents of its file and its mode
+*   /count?maze=M              the number of paths
+*   /contains?maze=M&label=L   true or false
+*   /load?maze=M&file=F        reads F into M, replacing the old maze; mode=balanced
+*                              or mode=bulk builds it like --balanced or --bulk
+*                              F is relative to the load root, see --root
+*   /reload?maze=M             reads the file of M again with the same mode
+*   /unload?maze=M             forgets M
+*   /mazes                     the loaded mazes
+*   /stats                     requests and latency percentiles per endpoint
+*
+* /load, /reload and /unload change the mazes and only answer POST requests, a GET is
+* answered with 405 so that a web page cannot change them through a link or an image
+*
+* A maze is never changed once it is built. Loading builds a new maze next to the old
+* one and then replaces it, so queries that are running finish on the old maze and
+* every query sees one whole maze
+*
+* /load only reads files inside the load root given with --root, also when a symbolic
+* link points elsewhere, and is refused if there is none. Answers never contain lines
+* of a loaded file, only the number of lines that were malformed or skipped
+*
+* Usage: java project5.MazeServer [options] [NAME=FILE ...]
+*   --port P           port to listen on, default 8355, 0 for any free port
+*   --threads T        threads that answer requests, default two per core
+*   --balanced         build the mazes given on the command line balanced
+*   --bulk             bulk-build the mazes given on the command line
+*   --root DIR         directory /load may read files from, default none
+*
+* @author Carsten Kaiser
+*/
+public class MazeServer {
+    //latencies kept per endpoint for the percentiles
+    private static final int LATENCY_SAMPLES = 4096;
+    //bytes of paths kept for repeated /paths requests
+    private static final long CACHE_BYTES = 64L << 20;
+    private static final List<String> ENDPOINTS =
+        Arrays.asList("paths", "count", "contains", "load", "reload", "unload", "mazes", "stats");
+    //endpoints that change the mazes
+    private static final List<String> POST_ENDPOINTS = Arrays.asList("load", "reload", "unload");
+
+    private final Map<String, LoadedMaze> mazes = new ConcurrentHashMap<>();
+    private final Map<String, Latencies> latencies = new LinkedHashMap<>();
+    private final PathCache cache = new PathCache(CACHE_BYTES);
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Path root; //real path of the load root, or null if /load is refused
+
+    /**
+    * Constructs a server on the loopback interface that does not accept requests yet
+    * and refuses to load files named in requests
+    *
+    * @param port the port, or 0 for any free port
+    * @param threads number of threads that answer requests
+    * @throws IOException if the port cannot be bound
+    */
+    public MazeServer(int port, int threads) throws IOException {
+        this(port, threads, null);
+    }
+
+    /**
+    * Constructs a server on the loopback interface that does not accept requests yet
+    *
+    * @param port the port, or 0 for any free port
+    * @param threads number of threads that answer requests
+    * @param root the only directory /load reads files from, or null to refuse /load
+    * @throws IOException if the port cannot be bound or the root does not exist
+    */
+    public MazeServer(int port, int threads, Path root) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        this.root = root == null ? null : root.toRealPath();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        for (String endpoint : ENDPOINTS) {
+            latencies.put(endpoint, new Latencies());
+            server.createContext("/" + endpoint, exchange -> handle(endpoint, exchange));
+        }
+    }
+
+    /**
+    * Starts accepting requests
+    */
+    public void start() {
+        server.start();
+    }
+
+    /**
+    * Stops accepting requests, waits up to the given time for the running ones
+    * and stops the threads
+    *
+    * @param delaySeconds the longest time to wait for running requests
+    */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+    * Returns the port the server listens on
+    *
+    * @return port the local port
+    */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+    * Reads a maze file and makes it available under the given name,
+    * replacing the maze that had the name before
+    *
+    * @param name the name of the maze
+    * @param file the maze file
+    * @param balanced true to build the maze balanced, like --balanced
+    * @param bulk true to bulk-build the maze, like --bulk
+    * @return loaded the loaded maze
+    * @throws IOException if the file does not exist or cannot be read
+    */
+    public LoadedMaze load(String name, Path file, boolean balanced, boolean bulk) throws IOException {
+        File mazeFile = file.toFile();
+        if (!mazeFile.exists()) {
+            throw new IOException("the file "+mazeFile.getAbsolutePath()+" does not exist.");
+        }
+        if (!mazeFile.canRead()) {
+            throw new IOException("the file "+mazeFile.getAbsolutePath()+" cannot be opened for reading.");
+        }
+
+        long start = System.nanoTime();
+        String mode = balanced ? "balanced" : bulk ? "bulk" : "insertion";
+        String key = PathCache.fileKey(file, mode);
+
+        //malformed lines are only counted, their text never leaves the server
+        MazeLoader loader = new MazeLoader(new PrintStream(OutputStream.nullOutputStream()));
+        List<MazeNode> nodes = new ArrayList<>();
+        loader.load(file, nodes::add);
+        Maze maze = new Maze(balanced);
+        maze.load(nodes, !bulk);
+        //otherwise the key would not belong to the maze that was built
+        if (!key.equals(PathCache.fileKey(file, mode))) {
+            throw new IOException("the file "+file+" changed while it was loaded.");
+        }
+
+        LoadedMaze loaded = new LoadedMaze(name, file, balanced, bulk, maze, key, loader.getMalformedLines(),
+                                           loader.getSkippedLines(), System.nanoTime() - start);
+        mazes.put(name, loaded);
+        return loaded;
+    }
+
+    /**
+    * Times and answers one request, and turns failures into error responses
+    *
+    * @param endpoint the endpoint that was called
+    * @param exchange the request and response
+    */
+    private void handle(String endpoint, HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (POST_ENDPOINTS.contains(endpoint) && !exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                throw new RequestException(405, "/"+endpoint+" changes the mazes and has to be a POST request");
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            switch (endpoint) {
+                case "paths":
+                    paths(exchange, find(query));
+                    break;
+                case "count":
+                    send(exchange, 200, find(query).maze.countAvailablePaths() + "\n");
+                    break;
+                case "contains":
+                    String label = require(query, "label");
+                    send(exchange, 200, find(query).maze.contains(new MazeNode(label, 0)) + "\n");
+                    break;
+                case "load":
+                    String mode = query.getOrDefault("mode", "");
+                    if (!Arrays.asList("", "balanced", "bulk").contains(mode)) {
+                        throw new RequestException(400, "unknown mode "+mode);
+                    }
+                    loadMaze(exchange, require(query, "maze"), resolve(require(query, "file")),
+                             mode.equals("balanced"), mode.equals("bulk"));
+                    break;
+                case "reload":
+                    LoadedMaze old = find(query);
+                    loadMaze(exchange, old.name, old.file, old.balanced, old.bulk);
+                    break;
+                case "unload":
+                    if (mazes.remove(require(query, "maze")) == null) {
+                        throw new RequestException(404, "no maze named "+query.get("maze"));
+                    }
+                    send(exchange, 200, "Unloaded "+query.get("maze")+"\n");
+                    break;
+                case "mazes":
+                    StringBuilder list = new StringBuilder();
+                    for (LoadedMaze loaded : new TreeMap<>(mazes).values()) {
+                        list.append(loaded).append('\n');
+                    }
+                    send(exchange, 200, list.toString());
+                    break;
+                default:
+                    send(exchange, 200, stats());
+            }
+        } catch (RequestException e) {
+            sendError(exchange, e.status, "Error: "+e.getMessage()+"\n");
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Error: "+e+"\n");
+        } finally {
+            exchange.close();
+            latencies.get(endpoint).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+    * Answers with the paths of the maze, one line per path as printAvailablePaths
+    * prints them. Mazes loaded from the same bytes in the same mode share the result 
+    * in the path cache. A result that is not cached is sent while it is found
+    *
+    * @param exchange the request and response
+    * @param loaded the maze
+    */
+    private void paths(HttpExchange exchange, LoadedMaze loaded) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        //the length is not known before the search, so the answer is chunked
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            cache.printAvailablePaths(loaded.key, loaded.maze, out);
+        }
+    }
+
+    /**
+    * Returns the real path of a file named in a request, which has to be inside the load root
+    * The name is resolved against the root, and links are followed before the check, so
+    * neither .. nor an absolute name nor a symbolic link can reach a file outside of it
+    *
+    * @param name the file name from the request
+    * @return file the real path of the file
+    * @throws RequestException if there is no load root, or the file is outside of it or does not exist
+    */
+    private Path resolve(String name) {
+        if (root == null) {
+            throw new RequestException(403, "loading files is disabled, start the server with --root");
+        }
+        Path file;
+        try {
+            file = root.resolve(name).normalize();
+        } catch (InvalidPathException e) {
+            throw new RequestException(400, "invalid file name "+name);
+        }
+        if (!file.startsWith(root)) {
+            throw new RequestException(403, "the file "+name+" is outside the load root");
+        }
+        try {
+            file = file.toRealPath();
+        } catch (IOException e) {
+            throw new RequestException(404, "the file "+name+" does not exist or cannot be read");
+        }
+        if (!file.startsWith(root)) {
+            throw new RequestException(403, "the file "+name+" is outside the load root");
+        }
+        return file;
+    }
+
+    /**
+    * Loads a maze and answers with what was loaded and how many lines were malformed or skipped
+    * If the file cannot be read the maze loaded before stays
+    *
+    * @param exchange the request and response
+    * @param name the name of the maze
+    * @param file the maze file
+    * @param balanced true to build the maze balanced
+    * @param bulk true to bulk-build the maze
+    */
+    private void loadMaze(HttpExchange exchange, String name, Path file, boolean balanced, boolean bulk)
+            throws IOException {
+        LoadedMaze loaded;
+        try {
+            loaded = load(name, file, balanced, bulk);
+        } catch (IOException e) {
+            throw new RequestException(400, e.getMessage());
+        }
+        send(exchange, 200, String.format("Loaded %s in %.3f ms%n%s", loaded,
+                                          loaded.loadNanos / 1e6, loaded.warnings()));
+    }
+
+    /**
+    * Returns the requests and the latency percentiles of every endpoint
+    *
+    * @return stats one line per endpoint
+    */
+    private String stats() {
+        StringBuilder text = new StringBuilder(String.format("%-9s %10s %10s %10s %10s %10s%n",
+                                               "endpoint", "requests", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, Latencies> entry : latencies.entrySet()) {
+            long[] sorted = entry.getValue().sorted();
+            text.append(String.format("%-9s %10d %10.3f %10.3f %10.3f %10.3f%n", entry.getKey(),
+                                      entry.getValue().requests(), percentile(sorted, 50) / 1e6,
+                                      percentile(sorted, 90) / 1e6, percentile(sorted, 99) / 1e6,
+                                      percentile(sorted, 100) / 1e6));
+        }
+        text.append("path cache: ").append(cache).append('\n');
+        return text.toString();
+    }
+
+    /**
+    * Returns the nearest-rank percentile of sorted values
+    *
+    * @param sorted the values in ascending order
+    * @param percent the percentile, 1 to 100
+    * @return value the percentile, or 0 if there are no values
+    */
+    static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /**
+    * Returns the maze named by the maze parameter
+    *
+    * @param query the query parameters
+    * @return loaded the maze
+    * @throws RequestException if the parameter is missing or no maze has the name
+    */
+    private LoadedMaze find(Map<String, String> query) {
+        String name = require(query, "maze");
+        LoadedMaze loaded = mazes.get(name);
+        if (loaded == null) {
+            throw new RequestException(404, "no maze named "+name);
+        }
+        return loaded;
+    }
+
+    /**
+    * Returns a query parameter that has to be present
+    *
+    * @param query the query parameters
+    * @param name the name of the parameter
+    * @return value the value of the parameter
+    * @throws RequestException if the parameter is missing
+    */
+    private static String require(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new RequestException(400, "missing parameter "+name);
+        }
+        return value;
+    }
+
+    /**
+    * Splits a raw query string into its decoded parameters
+    *
+    * @param rawQuery the query, or null
+    * @return query the parameters by name, the last one wins if a name repeats
+    */
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "" : parameter.substring(equals + 1);
+            try {
+                query.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                          URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new RequestException(400, "malformed query "+rawQuery);
+            }
+        }
+        return query;
+    }
+
+    /**
+    * Sends a complete plain text response
+    *
+    * @param exchange the request and response
+    * @param status the HTTP status
+    * @param text the body
+    */
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+    * Sends an error response, unless the headers of a streamed response were sent already
+    * Then the status cannot change anymore, and the exchange is only closed
+    *
+    * @param exchange the request and response
+    * @param status the HTTP status
+    * @param text the body
+    */
+    private static void sendError(HttpExchange exchange, int status, String text) throws IOException {
+        if (exchange.getResponseCode() == -1) {
+            send(exchange, status, text);
+        }
+    }
+
+    /**
+    * A maze that is loaded, with what is needed to load it again
+    */
+    public static class LoadedMaze {
+        private final String name;
+        private final Path file;
+        private final boolean balanced;
+        private final boolean bulk;
+        private final Maze maze;
+        private final String key; //key of the paths in the path cache
+        private final long malformedLines;
+        private final long skippedLines;
+        private final long loadNanos;
+
+        LoadedMaze(String name, Path file, boolean balanced, boolean bulk, Maze maze, String key,
+                   long malformedLines, long skippedLines, long loadNanos) {
+            this.name = name;
+            this.file = file;
+            this.balanced = balanced;
+            this.bulk = bulk;
+            this.maze = maze;
+            this.key = key;
+            this.malformedLines = malformedLines;
+            this.skippedLines = skippedLines;
+            this.loadNanos = loadNanos;
+        }
+
+        /**
+        * Returns how many lines of the file were malformed or skipped, without their text
+        *
+        * @return warnings one line with the counts, or an empty string if there were none
+        */
+        String warnings() {
+            if (malformedLines == 0 && skippedLines == 0) {
+                return "";
+            }
+            return malformedLines+" malformed lines, "+skippedLines+" lines with invalid life points skipped\n";
+        }
+
+        /**
+        * Returns the maze. It must not be changed while the server can reach it
+        *
+        * @return maze the maze
+        */
+        public Maze getMaze() {
+            return maze;
+        }
+
+        /**
+        * Returns the name, file, mode and size of the maze
+        *
+        * @return description one line describing the maze
+        */
+        @Override
+        public String toString() {
+            String mode = balanced ? " balanced" : bulk ? " bulk" : "";
+            return name+" "+file+mode+" ("+maze.size()+" nodes, height "+maze.height()+")";
+        }
+    }
+
+    /**
+    * The most recent latencies of one endpoint and the number of its requests
+    */
+    private static class Latencies {
+        private final long[] samples = new long[LATENCY_SAMPLES];
+        private long requests;
+
+        /**
+        * Records the latency of one request, replacing the oldest sample once all are used
+        *
+        * @param nanos the latency in nanoseconds
+        */
+        synchronized void record(long nanos) {
+            samples[(int) (requests % LATENCY_SAMPLES)] = nanos;
+            requests++;
+        }
+
+        /**
+        * Returns the number of requests recorded
+        *
+        * @return requests the number of requests
+        */
+        synchronized long requests() {
+            return requests;
+        }
+
+        /**
+        * Returns a sorted copy of the samples
+        *
+        * @return sorted the recorded latencies in ascending order
+        */
+        long[] sorted() {
+            long[] sorted;
+            synchronized (this) {
+                sorted = Arrays.copyOf(samples, (int) Math.min(requests, LATENCY_SAMPLES));
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+    * A request that cannot be answered, with the HTTP status to answer it with
+    */
+    private static class RequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 8355;
+        int threads = 2 * Runtime.getRuntime().availableProcessors();
+        boolean balanced = false;
+        boolean bulk = false;
+        Path root = null;
+
+        int arg = 0;
+        for (; arg < args.length && args[arg].startsWith("--"); arg++) {
+            try {
+                if (args[arg].equals("--balanced")) {
+                    balanced = true;
+                } else if (args[arg].equals("--bulk")) {
+                    bulk = true;
+                } else if (args[arg].equals("--port") && arg + 1 < args.length) {
+                    port = Integer.parseInt(args[++arg]);
+                } else if (args[arg].equals("--threads") && arg + 1 < args.length) {
+                    threads = Integer.parseInt(args[++arg]);
+                } else if (args[arg].equals("--root") && arg + 1 < args.length) {
+                    root = new File(args[++arg]).toPath();
+                } else {
+                    usageError("unknown option "+args[arg]);
+                }
+            } catch (NumberFormatException e) {
+                usageError("invalid value "+args[arg]+" for "+args[arg - 1]);
+            }
+        }
+        if (balanced && bulk) {
+            usageError("--balanced can not be combined with --bulk");
+        }
+        if (port < 0 || port > 65535 || threads < 1) {
+            usageError("--port must be between 0 and 65535 and --threads at least 1");
+        }
+        if (root != null && !root.toFile().isDirectory()) {
+            usageError("--root "+root+" is not a directory");
+        }
+
+        MazeServer server = new MazeServer(port, threads, root);
+        for (; arg < args.length; arg++) {
+            int equals = args[arg].indexOf('=');
+            if (equals <= 0) {
+                usageError("expected NAME=FILE instead of "+args[arg]);
+            }
+            try {
+                LoadedMaze loaded = server.load(args[arg].substring(0, equals),
+                                                new File(args[arg].substring(equals + 1)).toPath(),
+                                                balanced, bulk);
+                System.err.print(loaded.warnings());
+                System.err.printf("Loaded %s in %.3f ms%n", loaded, loaded.loadNanos / 1e6);
+            } catch (IOException e) {
+                System.err.println("Error: "+e.getMessage()+"\n");
+                System.exit(1);
+            }
+        }
+
+        server.start();
+        System.err.println("Listening on http://localhost:"+server.getPort()+"/");
+    }
+
+    /**
+    * Prints a usage error and exits
+    *
+    * @param message the reason
+    */
+    private static void usageError(String message) {
+        System.err.println("Usage Error: "+message+"\n");
+        System.exit(1);
+    }
+}
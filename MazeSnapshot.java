@@ -0,0 +1,401 @@
+package project5;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Class that represents a Maze saved in the binary snapshot format and mapped into memory
+ * The paths are searched directly in the mapped file, no node objects are created. 
+ * Opening a snapshot checks every record, so a damaged file is rejected up front 
+ * instead of failing in the middle of a search
+ *
+ * The file starts with a 32 byte header: the magic number "BTMZ", the format version, 
+ * the number of nodes, the height of the maze, the length of the label table, a reserved 
+ * int and the CRC32 checksum of the rest of the file. Then follows one 24 byte record 
+ * per node in pre-order, so the root is node 0: the index of the left child, the index 
+ * of the right child (-1 for none), the life points, the offset of the label in the 
+ * label table, and the height and the summary of the subtree of the node, which let the 
+ * search skip subtrees like Maze does (see PathSearch). The label table comes last and 
+ * holds the labels as UTF-8 in node order, so each label ends where the label of the 
+ * next node starts. All numbers are big-endian
+ *
+ * @author Carsten Kaiser
+ */
+public class MazeSnapshot {
+    static final int MAGIC = 0x42544D5A; //"BTMZ"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 24;
+    private static final int NONE = PathSearch.NONE;
+
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int height;
+    private final int labelBytes;
+    private final int labelTable; //position of the label table in the file
+
+    /**
+     * Constructs a snapshot over a mapped and validated file
+     *
+     * @param buffer the mapped file
+     * @param size the number of nodes
+     * @param height the height of the maze
+     * @param labelBytes the length of the label table
+     */
+    private MazeSnapshot(MappedByteBuffer buffer, int size, int height, int labelBytes) {
+        this.buffer = buffer;
+        this.size = size;
+        this.height = height;
+        this.labelBytes = labelBytes;
+        this.labelTable = HEADER_SIZE + size * RECORD_SIZE;
+    }
+
+    /**
+     * Writes a snapshot of the maze to the specified file, replacing it if it exists
+     *
+     * @param maze the maze to save
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     * @throws IllegalStateException if the snapshot would be larger than 2 GB
+     */
+    static void save(Maze maze, Path file) throws IOException {
+        //first pass: the length of every label, in pre-order
+        int[] labelLengths = new int[maze.size()];
+        long[] totals = new long[2]; //number of nodes seen, total label length
+        maze.walk(maze.root, maze.new Visitor() {
+            @Override
+            protected boolean enter(BST<MazeNode>.Node node, int depth) {
+                int length = utf8Length(node.data.getLabel());
+                labelLengths[(int) totals[0]] = length;
+                totals[0]++;
+                totals[1] += length;
+                return true;
+            }
+        });
+
+        long fileSize = HEADER_SIZE + (long) maze.size() * RECORD_SIZE + totals[1];
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The maze is too large for a snapshot");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, 
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+            CRC32 checksum = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), checksum));
+
+            //second pass: the node records; in pre-order the left child follows its 
+            //parent and the right child follows the whole left subtree
+            int[] index = new int[1];
+            int[] labelOffset = new int[1];
+            IOException[] failure = new IOException[1];
+            maze.walk(maze.root, maze.new Visitor() {
+                @Override
+                protected boolean enter(BST<MazeNode>.Node node, int depth) {
+                    int current = index[0];
+                    int leftSize = node.left == null ? 0 : node.left.size;
+                    try {
+                        out.writeInt(node.left == null ? NONE : current + 1);
+                        out.writeInt(node.right == null ? NONE : current + 1 + leftSize);
+                        out.writeInt(node.data.getLifePoints());
+                        out.writeInt(labelOffset[0]);
+                        out.writeInt(node.height);
+                        out.writeInt(node.summary);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                        return false;
+                    }
+                    labelOffset[0] += labelLengths[current];
+                    index[0]++;
+                    return true;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+
+            //third pass: the label table
+            maze.walk(maze.root, maze.new Visitor() {
+                @Override
+                protected boolean enter(BST<MazeNode>.Node node, int depth) {
+                    try {
+                        out.write(node.data.getLabel().getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        failure[0] = e;
+                        return false;
+                    }
+                    return true;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(maze.size());
+            header.putInt(maze.height());
+            header.putInt((int) totals[1]);
+            header.putInt(0);
+            header.putLong(checksum.getValue());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+    }
+
+    /**
+     * Maps a snapshot file into memory after checking its header, size and checksum
+     *
+     * @param file the snapshot file
+     * @return the mapped snapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    static MazeSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Not a maze snapshot: " + file);
+            }
+
+            //the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a maze snapshot: " + file);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported maze snapshot version " + buffer.getInt(4));
+            }
+
+            int size = buffer.getInt(8);
+            int height = buffer.getInt(12);
+            int labelBytes = buffer.getInt(16);
+            if (size < 0 || height < 0 || height > size || labelBytes < 0 
+                || HEADER_SIZE + (long) size * RECORD_SIZE + labelBytes != fileSize) {
+                throw new IOException("Corrupt maze snapshot: " + file);
+            }
+
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.slice(HEADER_SIZE, (int) fileSize - HEADER_SIZE));
+            if (checksum.getValue() != buffer.getLong(24)) {
+                throw new IOException("Checksum mismatch in maze snapshot: " + file);
+            }
+            //the search sizes its stacks by the height of the root
+            if (size > 0 && buffer.getInt(HEADER_SIZE + 16) != height) {
+                throw new IOException("Corrupt maze snapshot: " + file);
+            }
+            if (!recordsValid(buffer, size, labelBytes)) {
+                throw new IOException("Corrupt maze snapshot: " + file);
+            }
+
+            return new MazeSnapshot(buffer, size, height, labelBytes);
+        }
+    }
+
+    /**
+     * Checks that the records describe one tree in pre-order whose heights, summaries 
+     * and labels are consistent, so a search can neither leave the file nor loop. 
+     * A left child has to follow its parent, and a right child the whole left subtree. 
+     * Going through the records from the last to the first reaches both children of 
+     * a record before the record itself, like CompactMaze.summarize
+     *
+     * @param buffer the mapped file
+     * @param size the number of nodes
+     * @param labelBytes the length of the label table
+     * @return true if every record is valid
+     */
+    private static boolean recordsValid(MappedByteBuffer buffer, int size, int labelBytes) {
+        int[] subtreeSizes = new int[size];
+        int labelEnd = labelBytes;
+        for (int node = size - 1; node >= 0; node--) {
+            int record = HEADER_SIZE + node * RECORD_SIZE;
+            int left = buffer.getInt(record);
+            int right = buffer.getInt(record + 4);
+            int labelStart = buffer.getInt(record + 12);
+            if (labelStart < 0 || labelStart > labelEnd || (node == 0 && labelStart != 0)) {
+                return false;
+            }
+            labelEnd = labelStart;
+
+            int leftSize = 0;
+            int leftHeight = 0;
+            int leftSummary = 0;
+            if (left != NONE) {
+                if (left != node + 1 || left >= size) {
+                    return false;
+                }
+                leftSize = subtreeSizes[left];
+                leftHeight = buffer.getInt(HEADER_SIZE + left * RECORD_SIZE + 16);
+                leftSummary = buffer.getInt(HEADER_SIZE + left * RECORD_SIZE + 20);
+            }
+            int rightSize = 0;
+            int rightHeight = 0;
+            int rightSummary = 0;
+            if (right != NONE) {
+                if (right != node + 1 + leftSize || right >= size) {
+                    return false;
+                }
+                rightSize = subtreeSizes[right];
+                rightHeight = buffer.getInt(HEADER_SIZE + right * RECORD_SIZE + 16);
+                rightSummary = buffer.getInt(HEADER_SIZE + right * RECORD_SIZE + 20);
+            }
+            if (node + 1 + leftSize + rightSize > size) {
+                return false;
+            }
+            subtreeSizes[node] = 1 + leftSize + rightSize;
+
+            int height = Math.max(leftHeight, rightHeight) + 1;
+            int lifePoints = buffer.getInt(record + 8);
+            if (buffer.getInt(record + 16) != height 
+                || buffer.getInt(record + 20) != PathSearch.summary(lifePoints, height, leftHeight, 
+                                                                    leftSummary, rightHeight, rightSummary)) {
+                return false;
+            }
+        }
+        //every record belongs to the tree of the root
+        return size == 0 || subtreeSizes[0] == size;
+    }
+
+    /**
+     * Returns the number of nodes in the maze
+     *
+     * @return size the number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the height of the maze, zero if it is empty
+     *
+     * @return height the number of levels of the maze
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Prints all valid paths from the root to the leaf nodes where the nodes 
+     * are at the last level and life points are sufficient, in the same format 
+     * and order as Maze.printAvailablePaths
+     */
+    public void printAvailablePaths() {
+        try {
+            OutputStream out = new BufferedOutputStream(System.out, 1 << 16);
+            printAvailablePaths(out);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes all valid paths to the specified stream as UTF-8, one path per line, 
+     * as they are found. The stream is not flushed or closed
+     *
+     * @param out the stream to write the paths to
+     * @throws IOException if writing fails
+     */
+    public void printAvailablePaths(OutputStream out) throws IOException {
+        byte[] lineSeparator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+        byte[][] label = {new byte[64]};
+        PathSearch.forEachExit(new Records(), size == 0 ? NONE : 0, (path, pathLength) -> {
+            for (int i = 0; i < pathLength; i++) {
+                int node = path[i];
+                int start = labelStart(node);
+                int length = labelStart(node + 1) - start;
+                if (length > label[0].length) {
+                    label[0] = new byte[length];
+                }
+                buffer.get(labelTable + start, label[0], 0, length);
+                out.write(label[0], 0, length);
+                out.write(' ');
+            }
+            out.write(lineSeparator);
+        });
+    }
+
+    /**
+     * The node records as PathSearch sees them, by their index
+     */
+    private class Records implements PathSearch.IntTree {
+        @Override
+        public int left(int node) {
+            return buffer.getInt(HEADER_SIZE + node * RECORD_SIZE);
+        }
+
+        @Override
+        public int right(int node) {
+            return buffer.getInt(HEADER_SIZE + node * RECORD_SIZE + 4);
+        }
+
+        @Override
+        public int lifePoints(int node) {
+            return buffer.getInt(HEADER_SIZE + node * RECORD_SIZE + 8);
+        }
+
+        @Override
+        public int height(int node) {
+            return buffer.getInt(HEADER_SIZE + node * RECORD_SIZE + 16);
+        }
+
+        @Override
+        public int summary(int node) {
+            return buffer.getInt(HEADER_SIZE + node * RECORD_SIZE + 20);
+        }
+    }
+
+    /**
+     * Returns the offset of the label of a node in the label table
+     *
+     * @param node the index of the node, or size for the end of the table
+     * @return the offset of the label
+     */
+    private int labelStart(int node) {
+        if (node == size) {
+            return labelBytes;
+        }
+        return buffer.getInt(HEADER_SIZE + node * RECORD_SIZE + 12);
+    }
+
+    /**
+     * Returns the number of bytes a string takes in UTF-8 without encoding it
+     *
+     * @param text the string to measure
+     * @return the length of text in UTF-8
+     */
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() 
+                       && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,609 @@
+package project5;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the output of printAvailablePaths, keyed by a hash of what the maze is made of
+ * A maze read from a file is best keyed by fileKey, a hash of the bytes of the file and 
+ * the mode it is built in, which is known before the file is parsed, so a hit skips 
+ * parsing and building the maze altogether. A maze that is changed in memory is keyed 
+ * by Maze.contentHash instead: any add or remove changes the content hash, so a changed 
+ * maze never gets the paths of its old contents
+ *
+ * The paths are kept in memory up to a number of bytes, and the least recently used
+ * ones are evicted first. With a cache directory every computed result is also written
+ * to a file named after the hash, and a result that is not in memory is looked up there
+ * before the maze is searched, also by later runs. Results are streamed to and from the
+ * directory, so only results that fit into memory are ever held there as a whole. The
+ * directory is not bounded in size and may be emptied at any time. Disk errors only make
+ * the cache miss; they are counted but never fail a lookup, unless a cached file fails
+ * after part of it has already been written out
+ *
+ * All methods are safe to call from several threads
+ *
+ * @author Carsten Kaiser
+ */
+public class PathCache {
+    private static final String SUFFIX = ".paths";
+
+    private final long maxBytes;
+    private final Path directory;
+    //access order, so that iteration starts at the least recently used entry
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private long hits;
+    private long diskHits;
+    private long misses;
+    private long evictions;
+    private long diskErrors;
+
+    /**
+     * Constructs a cache that keeps results in memory only
+     *
+     * @param maxBytes the most bytes of paths kept in memory
+     */
+    public PathCache(long maxBytes) {
+        this(maxBytes, null);
+    }
+
+    /**
+     * Constructs a cache that keeps results in memory and in a directory
+     *
+     * @param maxBytes the most bytes of paths kept in memory
+     * @param directory the cache directory, created if needed, or null for memory only
+     * @throws IllegalArgumentException if maxBytes is negative
+     */
+    public PathCache(long maxBytes, Path directory) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the key of the paths of a maze file built in the given mode: the SHA-256 
+     * of the mode and the bytes of the file as hex digits. Reading the file is much 
+     * cheaper than parsing it and building the maze
+     *
+     * @param file the maze file
+     * @param mode how the maze is built, for example "balanced"
+     * @return key the key of the paths of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static String fileKey(Path file, String mode) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        digest.update(mode.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the result stored under the key, from memory or from the cache directory
+     *
+     * @param key the key of the result
+     * @return result the result, shared with the cache, so not to be changed; null if there is none
+     */
+    public byte[] get(String key) {
+        synchronized (this) {
+            byte[] result = entries.get(key);
+            if (result != null) {
+                hits++;
+                return result;
+            }
+        }
+
+        byte[] result = readFile(key);
+        synchronized (this) {
+            if (result != null) {
+                diskHits++;
+                put(key, result);
+            } else {
+                misses++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores a result under the key, in memory if it fits and in the cache directory
+     *
+     * @param key the key of the result
+     * @param result the result, not to be changed afterwards
+     */
+    public void store(String key, byte[] result) {
+        synchronized (this) {
+            put(key, result);
+        }
+        writeFile(key, result);
+    }
+
+    /**
+     * Returns the bytes printAvailablePaths writes for the maze, from the cache if
+     * possible, keyed by Maze.contentHash. The maze must not change while this method runs
+     *
+     * @param maze the maze
+     * @return paths the paths, one per line; shared with the cache, so not to be changed
+     */
+    public byte[] paths(Maze maze) {
+        String key = maze.contentHash();
+        byte[] paths = get(key);
+        if (paths == null) {
+            //searched without holding the lock; two threads may both search the same maze
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(buffer)));
+            maze.printAvailablePaths(out);
+            out.flush();
+            paths = buffer.toByteArray();
+            store(key, paths);
+        }
+        return paths;
+    }
+
+    /**
+     * Writes the paths of the maze to the stream, exactly as printAvailablePaths
+     * prints them, from the cache if possible, keyed by Maze.contentHash
+     * The stream is flushed but not closed
+     *
+     * @param maze the maze
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void printAvailablePaths(Maze maze, OutputStream out) throws IOException {
+        printAvailablePaths(maze.contentHash(), maze, out);
+    }
+
+    /**
+     * Writes the paths of the maze to the stream, exactly as printAvailablePaths
+     * prints them, from the cache if the key is there. Otherwise the paths are written 
+     * to the stream while they are found and stored under the key afterwards: in memory 
+     * if they fit, and in the cache directory through a temporary file that is renamed 
+     * once the search is done, so a result of any size is never held on the heap. 
+     * The stream is flushed but not closed
+     *
+     * @param key the key of the paths of the maze, for example its fileKey
+     * @param maze the maze
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void printAvailablePaths(String key, Maze maze, OutputStream out) throws IOException {
+        if (printCached(key, out)) {
+            return;
+        }
+
+        Capture capture = new Capture(out);
+        try {
+            PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(capture)));
+            maze.printAvailablePaths(writer);
+            writer.flush();
+            if (writer.checkError()) {
+                throw new IOException("The paths cannot be written");
+            }
+            capture.keep(key);
+        } finally {
+            capture.discard();
+        }
+    }
+
+    /**
+     * Writes the result stored under the key to the stream, from memory or from the 
+     * cache directory. A result in the directory that is larger than the memory of the 
+     * cache is copied to the stream in chunks instead of being read into memory
+     * The stream is flushed but not closed
+     *
+     * @param key the key of the result
+     * @param out the stream to write to
+     * @return true if the result was found and written, false if there is none
+     * @throws IOException if the stream cannot be written, or the cached file fails 
+     *         after part of it was written
+     */
+    public boolean printCached(String key, OutputStream out) throws IOException {
+        byte[] result;
+        synchronized (this) {
+            result = entries.get(key);
+            if (result != null) {
+                hits++;
+            }
+        }
+        if (result == null && directory != null) {
+            Path file = directory.resolve(key + SUFFIX);
+            long fileSize = -1;
+            try {
+                fileSize = Files.size(file);
+            } catch (NoSuchFileException e) {
+                //not cached
+            } catch (IOException e) {
+                synchronized (this) {
+                    diskErrors++;
+                }
+            }
+            if (fileSize > maxBytes) {
+                if (copyFile(file, out)) {
+                    synchronized (this) {
+                        diskHits++;
+                    }
+                    out.flush();
+                    return true;
+                }
+            } else if (fileSize >= 0) {
+                result = readFile(key);
+                if (result != null) {
+                    synchronized (this) {
+                        diskHits++;
+                        put(key, result);
+                    }
+                }
+            }
+        }
+        if (result == null) {
+            synchronized (this) {
+                misses++;
+            }
+            return false;
+        }
+        out.write(result);
+        out.flush();
+        return true;
+    }
+
+    /**
+     * Copies a file of the cache directory to the stream in chunks
+     *
+     * @param file the file of a result
+     * @param out the stream to write to
+     * @return true if the file was copied, false if it could not be read before anything was written
+     * @throws IOException if the stream cannot be written, or the file fails after part of it was written
+     */
+    private boolean copyFile(Path file, OutputStream out) throws IOException {
+        InputStream in;
+        try {
+            in = Files.newInputStream(file);
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            synchronized (this) {
+                diskErrors++;
+            }
+            return false;
+        }
+
+        try (in) {
+            byte[] chunk = new byte[1 << 16];
+            long written = 0;
+            while (true) {
+                int length;
+                try {
+                    length = in.read(chunk);
+                } catch (IOException e) {
+                    synchronized (this) {
+                        diskErrors++;
+                    }
+                    if (written == 0) {
+                        return false;
+                    }
+                    throw new IOException("The cached paths cannot be read", e);
+                }
+                if (length < 0) {
+                    return true;
+                }
+                out.write(chunk, 0, length);
+                written += length;
+            }
+        }
+    }
+
+    /**
+     * Stream that passes everything on and keeps a copy: in memory as long as it fits 
+     * into the cache, and in a temporary file of the cache directory if there is one
+     */
+    private class Capture extends OutputStream {
+        private final OutputStream out;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private Path temporary;
+        private OutputStream file;
+
+        Capture(OutputStream out) {
+            this.out = out;
+            if (maxBytes == 0) {
+                buffer = null;
+            }
+            if (directory != null) {
+                try {
+                    Files.createDirectories(directory);
+                    temporary = Files.createTempFile(directory, "paths", ".tmp");
+                    file = new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16);
+                } catch (IOException e) {
+                    diskError();
+                }
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            if (buffer != null) {
+                if (buffer.size() + (long) length > maxBytes) {
+                    //too large to be kept in memory, the copy so far is dropped
+                    buffer = null;
+                } else {
+                    buffer.write(bytes, offset, length);
+                }
+            }
+            if (file != null) {
+                try {
+                    file.write(bytes, offset, length);
+                } catch (IOException e) {
+                    diskError();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Stores the copies under the key once all paths are written
+         */
+        void keep(String key) {
+            if (buffer != null) {
+                synchronized (PathCache.this) {
+                    put(key, buffer.toByteArray());
+                }
+            }
+            if (file != null) {
+                try {
+                    file.close();
+                    file = null;
+                    Files.move(temporary, directory.resolve(key + SUFFIX),
+                               StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    temporary = null;
+                } catch (IOException e) {
+                    diskError();
+                }
+            }
+        }
+
+        /**
+         * Removes the temporary file if it was not renamed
+         */
+        void discard() {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                    //the file is deleted anyway
+                }
+                file = null;
+            }
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    //the temporary file is left behind, it is never read
+                }
+                temporary = null;
+            }
+        }
+
+        /**
+         * Gives up the copy in the cache directory after it failed
+         */
+        private void diskError() {
+            synchronized (PathCache.this) {
+                diskErrors++;
+            }
+            discard();
+        }
+    }
+
+    /**
+     * Adds a result to memory and evicts the least recently used results
+     * until the cache fits again. Results larger than the cache are not kept
+     *
+     * @param key the content hash
+     * @param paths the paths
+     */
+    private void put(String key, byte[] paths) {
+        if (paths.length > maxBytes) {
+            //an older result under the same key must not outlive the new one
+            byte[] old = entries.remove(key);
+            if (old != null) {
+                bytes -= old.length;
+            }
+            return;
+        }
+        byte[] old = entries.put(key, paths);
+        bytes += paths.length - (old == null ? 0 : old.length);
+
+        Iterator<Map.Entry<String, byte[]>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().getValue().length;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Reads a result from the cache directory
+     *
+     * @param key the content hash
+     * @return paths the paths, or null if there is no directory, no such file, 
+     *         or the file is too large for an array
+     */
+    private byte[] readFile(String key) {
+        if (directory == null) {
+            return null;
+        }
+        try {
+            Path file = directory.resolve(key + SUFFIX);
+            if (Files.size(file) > Integer.MAX_VALUE - 8) {
+                return null;
+            }
+            return Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            synchronized (this) {
+                diskErrors++;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Writes a result to the cache directory. The file is written under a temporary
+     * name and then renamed, so other readers never see a partly written result
+     *
+     * @param key the content hash
+     * @param paths the paths
+     */
+    private void writeFile(String key, byte[] paths) {
+        if (directory == null) {
+            return;
+        }
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporary, paths);
+            Files.move(temporary, directory.resolve(key + SUFFIX),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            synchronized (this) {
+                diskErrors++;
+            }
+            try {
+                if (temporary != null) {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException ignored) {
+                //the temporary file is left behind, it is never read
+            }
+        }
+    }
+
+    /**
+     * Removes all results from memory. The cache directory is left as it is
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Returns the number of lookups answered from memory
+     *
+     * @return hits the memory hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache directory
+     *
+     * @return diskHits the directory hits
+     */
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    /**
+     * Returns the number of lookups that had to search the maze
+     *
+     * @return misses the misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of results evicted from memory to make room
+     *
+     * @return evictions the evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of failed reads and writes of the cache directory
+     *
+     * @return diskErrors the disk errors
+     */
+    public synchronized long getDiskErrors() {
+        return diskErrors;
+    }
+
+    /**
+     * Returns the number of results in memory
+     *
+     * @return size the number of results
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of bytes of paths in memory
+     *
+     * @return bytes the bytes in memory
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "hits="+hits+" diskHits="+diskHits+" misses="+misses+" evictions="+evictions
+               +" diskErrors="+diskErrors+" entries="+entries.size()+" bytes="+bytes;
+    }
+}
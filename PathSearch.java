@@ -0,0 +1,305 @@
+package project5;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Search for the exits of a maze that is not stored in BST nodes, shared by CompactMaze,
+ * MazeSnapshot and ConcurrentMaze. The maze is seen through a Tree, which gives the
+ * children, life points, height and summary of a node. Mazes that name their nodes by
+ * int index, like CompactMaze and MazeSnapshot, are seen through an IntTree instead,
+ * so the search boxes no indices and keeps its stacks in int arrays
+ *
+ * The search follows the rules of Maze and finds the paths in the same order. A node
+ * is only entered if its subtree reaches the last level and the hero arrives with at
+ * least the summary of the node, the fewest life points that reach one of the deepest
+ * leaves below it (see summary). Every other subtree is skipped without being visited.
+ * The search keeps its own stack, so deep mazes do not overflow the call stack
+ *
+ * @author Carsten Kaiser
+ */
+final class PathSearch {
+    /**
+     * Read-only view of the nodes of a maze. A missing child is null
+     *
+     * @param <N> the type of a node, or of a handle for one
+     */
+    interface Tree<N> {
+        /**
+         * Returns the left child of node, or null
+         */
+        N left(N node);
+
+        /**
+         * Returns the right child of node, or null
+         */
+        N right(N node);
+
+        /**
+         * Returns the life points of node
+         */
+        int lifePoints(N node);
+
+        /**
+         * Returns the number of levels of the subtree rooted at node, one for a leaf
+         */
+        int height(N node);
+
+        /**
+         * Returns the summary of node, see PathSearch.summary
+         */
+        int summary(N node);
+    }
+
+    /**
+     * Action run for every exit that can be reached
+     *
+     * @param <N> the type of a node
+     */
+    interface ExitAction<N> {
+        /**
+         * Called with the path from the root to the exit. The same read-only 
+         * list is reused for the next path once the action returns
+         *
+         * @param path the nodes of the path, the root first
+         * @throws IOException if the action fails to write the path
+         */
+        void accept(List<N> path) throws IOException;
+    }
+
+    /**
+     * Read-only view of the nodes of a maze that are named by an index. 
+     * A missing child is NONE
+     */
+    interface IntTree {
+        /**
+         * Returns the index of the left child of node, or NONE
+         */
+        int left(int node);
+
+        /**
+         * Returns the index of the right child of node, or NONE
+         */
+        int right(int node);
+
+        /**
+         * Returns the life points of node
+         */
+        int lifePoints(int node);
+
+        /**
+         * Returns the number of levels of the subtree rooted at node, one for a leaf
+         */
+        int height(int node);
+
+        /**
+         * Returns the summary of node, see PathSearch.summary
+         */
+        int summary(int node);
+    }
+
+    /**
+     * Action run for every exit of an IntTree that can be reached
+     */
+    interface IntExitAction {
+        /**
+         * Called with the path from the root to the exit. The array is reused 
+         * for the next path once the action returns
+         *
+         * @param path the indices of the nodes of the path, the root first
+         * @param length the number of nodes on the path
+         * @throws IOException if the action fails to write the path
+         */
+        void accept(int[] path, int length) throws IOException;
+    }
+
+    /**
+     * The index of a missing child in an IntTree
+     */
+    static final int NONE = -1;
+
+    private PathSearch() {
+    }
+
+    /**
+     * Returns the fewest life points a hero has to arrive with at a node to reach one
+     * of the deepest leaves of its subtree: the life points after the node have to be
+     * positive, and one more life point is paid to move on to a child as tall as the
+     * node allows. Children that are too short for the deepest level are ignored
+     *
+     * @param lifePoints the life points of the node
+     * @param height the height of the node
+     * @param leftHeight the height of the left child, 0 if there is none
+     * @param leftSummary the summary of the left child
+     * @param rightHeight the height of the right child, 0 if there is none
+     * @param rightSummary the summary of the right child
+     * @return summary the summary of the node, clamped to the int range
+     */
+    static int summary(int lifePoints, int height, int leftHeight, int leftSummary,
+                       int rightHeight, int rightSummary) {
+        //the life points after the node have to be positive
+        long need = 1L - lifePoints;
+
+        //then one life point is paid to move to a child on the way to the deepest leaves
+        long child = Long.MAX_VALUE;
+        if (leftHeight > 0 && leftHeight == height - 1) {
+            child = leftSummary;
+        }
+        if (rightHeight > 0 && rightHeight == height - 1) {
+            child = Math.min(child, rightSummary);
+        }
+        if (child != Long.MAX_VALUE) {
+            need = Math.max(need, child + 1 - lifePoints);
+        }
+
+        //out of range values only make the search skip less
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, need));
+    }
+
+    /**
+     * Passes every path from the root to an exit, a leaf on the last level that is
+     * reached with positive life points, to the action in the order Maze finds them
+     *
+     * @param tree the view of the maze
+     * @param root the root of the maze, or null if it is empty
+     * @param action the action to run for each path
+     * @param <N> the type of a node
+     * @throws IOException if the action throws it
+     */
+    static <N> void forEachExit(Tree<N> tree, N root, ExitAction<N> action) throws IOException {
+        if (root == null) {
+            return;
+        }
+
+        //a node waits on the stack together with the life points on arrival and its depth
+        int height = tree.height(root);
+        Object[] nodeStack = new Object[height + 1];
+        int[] lifeStack = new int[height + 1];
+        int[] depthStack = new int[height + 1];
+        Object[] path = new Object[height];
+        int[] pathLength = new int[1];
+        List<N> pathView = new AbstractList<N>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public N get(int index) {
+                if (index < 0 || index >= pathLength[0]) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + pathLength[0]);
+                }
+                return (N) path[index];
+            }
+
+            @Override
+            public int size() {
+                return pathLength[0];
+            }
+        };
+
+        nodeStack[0] = root;
+        int top = 1;
+        while (top > 0) {
+            top--;
+            @SuppressWarnings("unchecked")
+            N node = (N) nodeStack[top];
+            nodeStack[top] = null;
+            int depth = depthStack[top];
+            int arrival = lifeStack[top];
+
+            //skip subtrees without exits on the last level or that cannot be survived
+            if (depth + tree.height(node) != height || arrival < tree.summary(node)) {
+                continue;
+            }
+            int life = arrival + tree.lifePoints(node);
+            if (life <= 0) {
+                continue;
+            }
+            path[depth] = node;
+
+            N left = tree.left(node);
+            N right = tree.right(node);
+            if (left == null && right == null) {
+                //the height check above only lets leaves on the last level get here
+                pathLength[0] = depth + 1;
+                action.accept(pathView);
+                continue;
+            }
+
+            //the left subtree goes on top of the stack, so it is searched first
+            if (right != null) {
+                nodeStack[top] = right;
+                lifeStack[top] = life - 1;
+                depthStack[top] = depth + 1;
+                top++;
+            }
+            if (left != null) {
+                nodeStack[top] = left;
+                lifeStack[top] = life - 1;
+                depthStack[top] = depth + 1;
+                top++;
+            }
+        }
+    }
+
+    /**
+     * Passes every path from the root to an exit to the action like forEachExit,
+     * for a maze whose nodes are named by index
+     *
+     * @param tree the view of the maze
+     * @param root the index of the root, or NONE if the maze is empty
+     * @param action the action to run for each path
+     * @throws IOException if the action throws it
+     */
+    static void forEachExit(IntTree tree, int root, IntExitAction action) throws IOException {
+        if (root == NONE) {
+            return;
+        }
+
+        //a node waits on the stack together with the life points on arrival and its depth
+        int height = tree.height(root);
+        int[] nodeStack = new int[height + 1];
+        int[] lifeStack = new int[height + 1];
+        int[] depthStack = new int[height + 1];
+        int[] path = new int[height];
+
+        nodeStack[0] = root;
+        int top = 1;
+        while (top > 0) {
+            top--;
+            int node = nodeStack[top];
+            int depth = depthStack[top];
+            int arrival = lifeStack[top];
+
+            //skip subtrees without exits on the last level or that cannot be survived
+            if (depth + tree.height(node) != height || arrival < tree.summary(node)) {
+                continue;
+            }
+            int life = arrival + tree.lifePoints(node);
+            if (life <= 0) {
+                continue;
+            }
+            path[depth] = node;
+
+            int left = tree.left(node);
+            int right = tree.right(node);
+            if (left == NONE && right == NONE) {
+                //the height check above only lets leaves on the last level get here
+                action.accept(path, depth + 1);
+                continue;
+            }
+
+            //the left subtree goes on top of the stack, so it is searched first
+            if (right != NONE) {
+                nodeStack[top] = right;
+                lifeStack[top] = life - 1;
+                depthStack[top] = depth + 1;
+                top++;
+            }
+            if (left != NONE) {
+                nodeStack[top] = left;
+                lifeStack[top] = life - 1;
+                depthStack[top] = depth + 1;
+                top++;
+            }
+        }
+    }
+}
@@ -0,0 +1,826 @@
+package project5;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+* Immutable binary search tree. add and remove leave this tree unchanged and return
+* a new tree that shares every node except the copies made along the changed path,
+* so a tree can be read by any number of threads without locks while newer versions
+* are created, and old versions become garbage once nobody refers to them
+*
+* Like BST, a tree is kept AVL balanced if it was created balanced, and otherwise
+* keeps the shape given by the insertion order. A node with two children is removed
+* by moving its successor into its place, the same way BST does
+*
+* Every node can also carry a summary of its subtree, computed by a Summary that is
+* given when the tree is created, the way Maze keeps one through BST.updateSummary
+*
+* union and difference split one tree at the elements of the other and join the
+* pieces, so combining a large tree with a small one copies only the paths to the
+* elements of the small tree and shares every other subtree with the operands
+*
+* @author Carsten Kaiser
+*/
+public final class PersistentBST<E extends Comparable<E>> implements Iterable<E> {
+    //union and difference recurse at most this deep, see canSplit
+    private static final int MAX_SPLIT_DEPTH = 256;
+
+    private final Node<E> root;
+    private final boolean balanced;
+    private final Summary<? super E> summary; //null if the nodes keep no summary
+
+    /**
+    * Constructs a new empty tree that keeps the shape given by the insertion order
+    */
+    public PersistentBST() {
+        this(false);
+    }
+
+    /**
+    * Constructs a new empty tree
+    * If balanced is true, every tree derived from it is AVL balanced, so that add and
+    * remove copy O(log n) nodes regardless of the insertion order
+    *
+    * @param balanced true to keep the trees balanced, false for plain insertion order
+    */
+    public PersistentBST(boolean balanced) {
+        this(null, balanced, null);
+    }
+
+    /**
+    * Constructs a new empty tree whose nodes keep a summary of their subtrees
+    * Every tree derived from it computes the summaries of its new nodes the same way
+    *
+    * @param balanced true to keep the trees balanced, false for plain insertion order
+    * @param summary computes the summary of a node from the summaries of its children
+    */
+    PersistentBST(boolean balanced, Summary<? super E> summary) {
+        this(null, balanced, summary);
+    }
+
+    /**
+    * Constructs a tree with the specified root
+    *
+    * @param root the root node, null for an empty tree
+    * @param balanced true if the tree is AVL balanced
+    * @param summary computes the summaries of new nodes, or null
+    */
+    private PersistentBST(Node<E> root, boolean balanced, Summary<? super E> summary) {
+        this.root = root;
+        this.balanced = balanced;
+        this.summary = summary;
+    }
+
+    /**
+    * Computes the summary a node keeps for its subtree from its element, its height 
+    * and the heights and summaries of its children
+    *
+    * @param <E> the type of the elements
+    */
+    @FunctionalInterface
+    interface Summary<E> {
+        /**
+        * Returns the summary of a node
+        *
+        * @param data the element of the node
+        * @param height the height of the node
+        * @param leftHeight the height of the left child, 0 if there is none
+        * @param leftSummary the summary of the left child, 0 if there is none
+        * @param rightHeight the height of the right child, 0 if there is none
+        * @param rightSummary the summary of the right child, 0 if there is none
+        * @return summary the summary of the node
+        */
+        int of(E data, int height, int leftHeight, int leftSummary, int rightHeight, int rightSummary);
+    }
+
+    /**
+    * Returns a tree that also contains the specified element
+    * The nodes on the path to the new leaf are copied, all other nodes are shared
+    *
+    * @param data the element to add
+    * @return the new tree, or this tree if it already contains an equal element
+    * @throws NullPointerException if the specified element is null
+    */
+    public PersistentBST<E> add(E data) {
+        if (data == null) {
+            throw new NullPointerException("Specified element can not be null");
+        }
+
+        Node<E>[] path = newPath();
+        int depth = 0;
+        Node<E> current = root;
+        while (current != null) {
+            int compare = current.data.compareTo(data);
+            if (compare == 0) { //duplicate
+                return this;
+            }
+            path[depth++] = current;
+            current = compare > 0 ? current.left : current.right;
+        }
+
+        return new PersistentBST<>(copyPath(path, depth, data, newNode(data, null, null)), balanced, summary);
+    }
+
+    /**
+    * Returns a tree without the specified element
+    * The nodes from the root to the removed node's successor are copied, all other
+    * nodes are shared
+    *
+    * @param o the element to remove
+    * @return the new tree, or this tree if it does not contain the element
+    * @throws NullPointerException if the specified element is null
+    * @throws ClassCastException if the specified element can not be compared to the elements
+    */
+    @SuppressWarnings("unchecked")
+    public PersistentBST<E> remove(Object o) {
+        if (o == null) {
+            throw new NullPointerException("Specified element can not be null");
+        }
+        E data = (E) o;
+
+        Node<E>[] path = newPath();
+        int depth = 0;
+        Node<E> current = root;
+        while (current != null) {
+            int compare = current.data.compareTo(data);
+            if (compare == 0) {
+                break;
+            }
+            path[depth++] = current;
+            current = compare > 0 ? current.left : current.right;
+        }
+        if (current == null) {
+            return this;
+        }
+
+        Node<E> replacement;
+        if (current.left == null) {
+            replacement = current.right;
+        } else if (current.right == null) {
+            replacement = current.left;
+        } else {
+            //the successor takes the place of the removed node, its right
+            //subtree takes the place of the successor
+            Node<E>[] minPath = newPath();
+            int minDepth = 0;
+            Node<E> minNode = current.right;
+            while (minNode.left != null) {
+                minPath[minDepth++] = minNode;
+                minNode = minNode.left;
+            }
+            Node<E> right = copyPath(minPath, minDepth, minNode.data, minNode.right);
+            replacement = balance(newNode(minNode.data, current.left, right));
+        }
+
+        return new PersistentBST<>(copyPath(path, depth, data, replacement), balanced, summary);
+    }
+
+    /**
+    * Returns a tree with the elements of this tree and the specified tree. Of two equal
+    * elements the one from this tree is kept. One tree is split at the elements of the
+    * other, always following the lower of the two, and the pieces are joined again,
+    * which takes O(m log(n/m + 1)) for balanced trees of m <= n elements. Every subtree
+    * that does not change is shared with the operands. Trees of different kinds, or
+    * deep trees in insertion order, are combined by adding the elements of the other
+    * tree one by one instead. Neither tree is changed
+    *
+    * @param other the tree to merge with this tree
+    * @return union the new tree, or this tree if other is empty
+    * @throws NullPointerException if other is null
+    */
+    public PersistentBST<E> union(PersistentBST<E> other) {
+        if (other == null) {
+            throw new NullPointerException("Specified tree can not be null");
+        }
+        if (other.root == null) {
+            return this;
+        }
+        if (!canSplit(other)) {
+            PersistentBST<E> union = this;
+            for (E element : other) {
+                union = union.add(element);
+            }
+            return union;
+        }
+        return new PersistentBST<>(union(root, other.root), balanced, summary);
+    }
+
+    /**
+    * Returns a tree with the elements of this tree that are not in the specified tree
+    * Splits and joins like union, in O(m log(n/m + 1)) for balanced trees, and shares
+    * every subtree that does not change with this tree. Neither tree is changed
+    *
+    * @param other the tree whose elements are left out
+    * @return difference the new tree, or this tree if nothing is left out
+    * @throws NullPointerException if other is null
+    */
+    public PersistentBST<E> difference(PersistentBST<E> other) {
+        if (other == null) {
+            throw new NullPointerException("Specified tree can not be null");
+        }
+        if (!canSplit(other)) {
+            PersistentBST<E> difference = this;
+            if (size() <= other.size()) {
+                for (E element : this) {
+                    if (other.contains(element)) {
+                        difference = difference.remove(element);
+                    }
+                }
+            } else {
+                for (E element : other) {
+                    difference = difference.remove(element);
+                }
+            }
+            return difference;
+        }
+        Node<E> result = difference(root, other.root);
+        return result == root ? this : new PersistentBST<>(result, balanced, summary);
+    }
+
+    /**
+    * Returns true if union and difference can split and join the two trees: their 
+    * nodes can only be shared if both are of the same kind and keep the same 
+    * summaries, and the recursion, which goes down one of the two trees per call, 
+    * has to stay shallow. A balanced tree is never deeper than about 45 levels
+    *
+    * @param other the other tree
+    * @return true if the trees can be split and joined
+    */
+    private boolean canSplit(PersistentBST<E> other) {
+        return balanced == other.balanced && summary == other.summary
+               && (balanced || heightOf(root) + heightOf(other.root) <= MAX_SPLIT_DEPTH);
+    }
+
+    /**
+    * Returns the union of two subtrees, keeping the elements of mine
+    *
+    * @param mine a subtree of this tree, or a piece of it
+    * @param theirs a subtree of the other tree, or a piece of it
+    * @return the root of the union
+    */
+    private Node<E> union(Node<E> mine, Node<E> theirs) {
+        if (mine == null) {
+            return theirs;
+        }
+        if (theirs == null) {
+            return mine;
+        }
+        if (mine.height <= theirs.height) {
+            Split<E> split = split(theirs, mine.data);
+            return join(union(mine.left, split.less), mine.data, union(mine.right, split.greater));
+        }
+        Split<E> split = split(mine, theirs.data);
+        E data = split.found != null ? split.found : theirs.data;
+        return join(union(split.less, theirs.left), data, union(split.greater, theirs.right));
+    }
+
+    /**
+    * Returns the elements of one subtree that are not in another
+    *
+    * @param mine a subtree of this tree, or a piece of it
+    * @param theirs a subtree of the other tree, or a piece of it
+    * @return the root of the difference, mine itself if nothing is left out
+    */
+    private Node<E> difference(Node<E> mine, Node<E> theirs) {
+        if (mine == null || theirs == null) {
+            return mine;
+        }
+        if (theirs.height <= mine.height) {
+            Split<E> split = split(mine, theirs.data);
+            Node<E> left = difference(split.less, theirs.left);
+            Node<E> right = difference(split.greater, theirs.right);
+            if (split.found == null && left == split.less && right == split.greater) {
+                //nothing of theirs is in mine, so mine stays as it is
+                return mine;
+            }
+            return join2(left, right);
+        }
+        Split<E> split = split(theirs, mine.data);
+        Node<E> left = difference(mine.left, split.less);
+        Node<E> right = difference(mine.right, split.greater);
+        if (split.found != null) {
+            return join2(left, right);
+        }
+        if (left == mine.left && right == mine.right) {
+            return mine;
+        }
+        return join(left, mine.data, right);
+    }
+
+    /**
+    * The two pieces of a subtree split at an element, and the equal element if there was one
+    */
+    private static final class Split<E> {
+        Node<E> less;
+        Node<E> greater;
+        E found;
+    }
+
+    /**
+    * Splits a subtree into the elements less than and greater than the specified one
+    * Goes down the search path and joins the pieces back together on the way up, 
+    * so a balanced subtree is split in O(log n) and the pieces are balanced
+    *
+    * @param node the root of the subtree
+    * @param data the element to split at
+    * @return split the two pieces, and the element of the subtree equal to data, if any
+    */
+    private Split<E> split(Node<E> node, E data) {
+        Node<E>[] path = newPath(heightOf(node));
+        int depth = 0;
+        Split<E> split = new Split<>();
+        while (node != null) {
+            int compare = node.data.compareTo(data);
+            if (compare == 0) {
+                split.less = node.left;
+                split.greater = node.right;
+                split.found = node.data;
+                break;
+            }
+            path[depth++] = node;
+            node = compare > 0 ? node.left : node.right;
+        }
+
+        for (int i = depth - 1; i >= 0; i--) {
+            Node<E> parent = path[i];
+            if (parent.data.compareTo(data) > 0) {
+                split.greater = join(split.greater, parent.data, parent.right);
+            } else {
+                split.less = join(parent.left, parent.data, split.less);
+            }
+        }
+        return split;
+    }
+
+    /**
+    * Returns a subtree with the elements of left, then data, then the elements of right
+    * In a balanced tree the lower subtree is hung into the taller one at the level where
+    * the heights match, and the copies above it are rebalanced, in O(|h(left) - h(right)|)
+    *
+    * @param left the subtree of the smaller elements, may be null
+    * @param data the element between the two subtrees
+    * @param right the subtree of the greater elements, may be null
+    * @return the root of the joined subtree
+    */
+    private Node<E> join(Node<E> left, E data, Node<E> right) {
+        if (balanced) {
+            if (heightOf(left) > heightOf(right) + 1) {
+                return balance(newNode(left.data, left.left, join(left.right, data, right)));
+            }
+            if (heightOf(right) > heightOf(left) + 1) {
+                return balance(newNode(right.data, join(left, data, right.left), right.right));
+            }
+        }
+        return newNode(data, left, right);
+    }
+
+    /**
+    * Returns a subtree with the elements of left followed by the elements of right
+    * The greatest element of left is taken out and joins the two
+    *
+    * @param left the subtree of the smaller elements, may be null
+    * @param right the subtree of the greater elements, may be null
+    * @return the root of the joined subtree
+    */
+    private Node<E> join2(Node<E> left, Node<E> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        //take the greatest element off the right spine of left
+        Node<E>[] path = newPath(left.height);
+        int depth = 0;
+        Node<E> node = left;
+        while (node.right != null) {
+            path[depth++] = node;
+            node = node.right;
+        }
+        Node<E> rest = node.left;
+        for (int i = depth - 1; i >= 0; i--) {
+            rest = join(path[i].left, path[i].data, rest);
+        }
+        return join(rest, node.data, right);
+    }
+
+    /**
+    * Copies the nodes of a search path bottom up, linking each copy to the copy below
+    * In a balanced tree every copy is rebalanced on the way up
+    *
+    * @param path the nodes from the root down, path[depth - 1] is the parent of the change
+    * @param depth number of nodes on the path
+    * @param data the element that was searched, decides which child of each node changed
+    * @param subtree the new subtree that replaces the child of path[depth - 1]
+    * @return the new root
+    */
+    private Node<E> copyPath(Node<E>[] path, int depth, E data, Node<E> subtree) {
+        for (int i = depth - 1; i >= 0; i--) {
+            Node<E> node = path[i];
+            if (node.data.compareTo(data) > 0) {
+                subtree = balance(newNode(node.data, subtree, node.right));
+            } else {
+                subtree = balance(newNode(node.data, node.left, subtree));
+            }
+        }
+        return subtree;
+    }
+
+    /**
+    * Returns an array that can hold any search path of this tree
+    * The height of the tree bounds the path, and add and remove make it longer by at most one
+    *
+    * @return path an empty array for the nodes of a search path
+    */
+    private Node<E>[] newPath() {
+        return newPath(heightOf(root) + 1);
+    }
+
+    /**
+    * Returns an array for the nodes of a path of the given length
+    *
+    * @param length the length of the array
+    * @return path an empty array for the nodes of a path
+    */
+    @SuppressWarnings("unchecked")
+    private static <E> Node<E>[] newPath(int length) {
+        return (Node<E>[]) new Node<?>[length];
+    }
+
+    /**
+    * Restores the AVL property at the specified node in a balanced tree using single
+    * or double rotations. The rotated nodes are copied, the node itself is not changed
+    *
+    * @param node the node to rebalance
+    * @return the root of the balanced subtree that replaces node
+    */
+    private Node<E> balance(Node<E> node) {
+        if (!balanced) {
+            return node;
+        }
+
+        int balance = heightOf(node.left) - heightOf(node.right);
+        if (balance > 1) { //left heavy
+            Node<E> left = node.left;
+            if (heightOf(left.left) < heightOf(left.right)) {
+                left = rotateLeft(left);
+            }
+            return rotateRight(newNode(node.data, left, node.right));
+        } else if (balance < -1) { //right heavy
+            Node<E> right = node.right;
+            if (heightOf(right.right) < heightOf(right.left)) {
+                right = rotateRight(right);
+            }
+            return rotateLeft(newNode(node.data, node.left, right));
+        }
+        return node;
+    }
+
+    /**
+    * Returns a copy of the subtree rotated to the left
+    *
+    * @param node the root of the subtree, its right child becomes the new root
+    * @return the new root of the subtree
+    */
+    private Node<E> rotateLeft(Node<E> node) {
+        Node<E> right = node.right;
+        return newNode(right.data, newNode(node.data, node.left, right.left), right.right);
+    }
+
+    /**
+    * Returns a copy of the subtree rotated to the right
+    *
+    * @param node the root of the subtree, its left child becomes the new root
+    * @return the new root of the subtree
+    */
+    private Node<E> rotateRight(Node<E> node) {
+        Node<E> left = node.left;
+        return newNode(left.data, left.left, newNode(node.data, left.right, node.right));
+    }
+
+    /**
+    * Creates a node whose summary is computed the way this tree computes them
+    *
+    * @param data the element of the node
+    * @param left the left child, may be null
+    * @param right the right child, may be null
+    * @return node the new node
+    */
+    private Node<E> newNode(E data, Node<E> left, Node<E> right) {
+        return new Node<>(data, left, right, summary);
+    }
+
+    /**
+    * Returns the height of the specified subtree, zero for an empty subtree
+    *
+    * @param node root of the subtree
+    * @return the height of the subtree
+    */
+    private static int heightOf(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+    * Returns the number of elements in the specified subtree, zero for an empty subtree
+    *
+    * @param node root of the subtree
+    * @return the number of nodes in the subtree
+    */
+    private static int sizeOf(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+    * Returns true if this tree contains the specified element
+    *
+    * @param o element whose presence is to be tested
+    * @return true if this tree contains the element
+    * @throws NullPointerException if the specified element is null
+    * @throws ClassCastException if the specified element can not be compared to the elements
+    */
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        if (o == null) {
+            throw new NullPointerException("Specified element can not be null");
+        }
+        E data = (E) o;
+        Node<E> current = root;
+        while (current != null) {
+            int compare = current.data.compareTo(data);
+            if (compare == 0) {
+                return true;
+            }
+            current = compare > 0 ? current.left : current.right;
+        }
+        return false;
+    }
+
+    /**
+    * Returns the least element greater than or equal to the given element,
+    * or null if there is no such element
+    *
+    * @param data the value to match
+    * @return the ceiling of data, or null
+    * @throws NullPointerException if the specified element is null
+    */
+    public E ceiling(E data) {
+        return search(data, true, true);
+    }
+
+    /**
+    * Returns the greatest element less than or equal to the given element,
+    * or null if there is no such element
+    *
+    * @param data the value to match
+    * @return the floor of data, or null
+    * @throws NullPointerException if the specified element is null
+    */
+    public E floor(E data) {
+        return search(data, false, true);
+    }
+
+    /**
+    * Returns the least element strictly greater than the given element,
+    * or null if there is no such element
+    *
+    * @param data the value to match
+    * @return the next higher element, or null
+    * @throws NullPointerException if the specified element is null
+    */
+    public E higher(E data) {
+        return search(data, true, false);
+    }
+
+    /**
+    * Returns the greatest element strictly less than the given element,
+    * or null if there is no such element
+    *
+    * @param data the value to match
+    * @return the next lower element, or null
+    * @throws NullPointerException if the specified element is null
+    */
+    public E lower(E data) {
+        return search(data, false, false);
+    }
+
+    /**
+    * Finds the closest element above or below the given element
+    *
+    * @param data the value to match
+    * @param above true to look for elements greater than data, false for less
+    * @param inclusive true if an element equal to data matches
+    * @return the closest matching element, or null
+    */
+    private E search(E data, boolean above, boolean inclusive) {
+        if (data == null) {
+            throw new NullPointerException("Value can not be null");
+        }
+
+        Node<E> current = root;
+        Node<E> best = null;
+        while (current != null) {
+            int compare = current.data.compareTo(data);
+            if (compare == 0 && inclusive) {
+                return current.data;
+            }
+            if (above ? compare > 0 : compare < 0) {
+                best = current;
+                current = above ? current.left : current.right;
+            } else {
+                current = above ? current.right : current.left;
+            }
+        }
+        return best == null ? null : best.data;
+    }
+
+    /**
+    * Returns the first (lowest) element in this tree
+    *
+    * @return the first element
+    * @throws NoSuchElementException if this tree is empty
+    */
+    public E first() {
+        if (root == null) {
+            throw new NoSuchElementException("Tree is empty");
+        }
+        Node<E> current = root;
+        while (current.left != null) {
+            current = current.left;
+        }
+        return current.data;
+    }
+
+    /**
+    * Returns the last (highest) element in this tree
+    *
+    * @return the last element
+    * @throws NoSuchElementException if this tree is empty
+    */
+    public E last() {
+        if (root == null) {
+            throw new NoSuchElementException("Tree is empty");
+        }
+        Node<E> current = root;
+        while (current.right != null) {
+            current = current.right;
+        }
+        return current.data;
+    }
+
+    /**
+    * Returns the element at the specified position in this tree
+    *
+    * @param index index of the element to return
+    * @return the element at the specified position
+    * @throws IndexOutOfBoundsException if the index is out of range
+    */
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node<E> current = root;
+        while (true) {
+            int leftSize = sizeOf(current.left);
+            if (index < leftSize) {
+                current = current.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                current = current.right;
+            } else {
+                return current.data;
+            }
+        }
+    }
+
+    /**
+    * Returns the number of elements in this tree
+    *
+    * @return size size of tree
+    */
+    public int size() {
+        return sizeOf(root);
+    }
+
+    /**
+    * Returns the height of this tree, zero if it is empty
+    *
+    * @return height the number of levels in the tree
+    */
+    public int height() {
+        return heightOf(root);
+    }
+
+    /**
+    * Returns true if this tree contains no elements
+    *
+    * @return true if this tree is empty
+    */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+    * Returns true if this tree is kept AVL balanced
+    *
+    * @return true if add and remove balance the tree
+    */
+    public boolean isBalanced() {
+        return balanced;
+    }
+
+    /**
+    * Returns the root node, for searches that need the shape of the tree
+    *
+    * @return root the root node, or null if the tree is empty
+    */
+    Node<E> root() {
+        return root;
+    }
+
+    /**
+    * Returns an iterator over the elements in ascending order
+    * The tree never changes, so the iterator never fails and does not support remove
+    *
+    * @return an iterator over the elements in this tree
+    */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            //the nodes whose element and right subtree are still to come,
+            //at most as many as the height of the tree
+            @SuppressWarnings("unchecked")
+            private final Node<E>[] stack = (Node<E>[]) new Node<?>[heightOf(root)];
+            private int top = pushLeft(root, 0);
+
+            private int pushLeft(Node<E> node, int top) {
+                while (node != null) {
+                    stack[top++] = node;
+                    node = node.left;
+                }
+                return top;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return top > 0;
+            }
+
+            @Override
+            public E next() {
+                if (top == 0) {
+                    throw new NoSuchElementException("No more elements");
+                }
+                Node<E> node = stack[--top];
+                stack[top] = null;
+                top = pushLeft(node.right, top);
+                return node.data;
+            }
+        };
+    }
+
+    /**
+    * Returns a string representation of this tree, the elements in ascending order
+    * enclosed in square brackets ("[]") and separated by ", "
+    *
+    * @return result a string representation of this tree
+    */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        Iterator<E> iterator = this.iterator();
+        while (iterator.hasNext()) {
+            result.append(iterator.next());
+            if (iterator.hasNext()) {
+                result.append(", ");
+            }
+        }
+        result.append("]");
+        return result.toString();
+    }
+
+    /**
+    * Immutable node, its height, size and summary are computed once from its children
+    * The summary is 0 if the tree keeps no summaries
+    */
+    static final class Node<E> {
+        final E data;
+        final Node<E> left;
+        final Node<E> right;
+        final int height;
+        final int size; //number of nodes in the subtree rooted at this node
+        final int summary;
+
+        Node(E data, Node<E> left, Node<E> right, Summary<? super E> summary) {
+            this.data = data;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(heightOf(left), heightOf(right));
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+            this.summary = summary == null ? 0 
+                           : summary.of(data, height, heightOf(left), left == null ? 0 : left.summary,
+                                        heightOf(right), right == null ? 0 : right.summary);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package project5;
+
+/**
+* Elements that can be ordered by a long key instead of compareTo
+* BST caches the key of every element it holds and compares keys with 
+* Long.compareUnsigned whenever both sides have one, which is much cheaper 
+* than a call to compareTo in the loops that walk down the tree
+*
+* @author Carsten Kaiser
+*/
+public interface PrimitiveKeyed {
+    /**
+    * Key of elements that have to be compared with compareTo
+    */
+    long NO_KEY = -1L;
+
+    /**
+    * Returns the key of this element, or NO_KEY if it has none. For any two elements 
+    * a and b with keys, Long.compareUnsigned(a.primitiveKey(), b.primitiveKey()) 
+    * has the same sign as a.compareTo(b). The key of an element must never change
+    *
+    * @return the key of this element, or NO_KEY
+    */
+    long primitiveKey();
+}
@@ -0,0 +1,115 @@
+package project5;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* Counters for the hot paths of BST: comparisons per add and contains, the nodes
+* updateHeight goes through, the parent links followed by the iterative walks and
+* the deepest descent. The counters know nothing about mazes, MazeMetrics reports
+* them together with the counters of the maze searches
+*
+* The instrumentation is off unless the JVM is started with -Dproject5.metrics=true.
+* ENABLED is a constant, so when it is false the JIT compiler removes the guarded
+* counting code entirely
+*
+* @author Carsten Kaiser
+*/
+final class TreeMetrics {
+    /**
+    * True if the instrumentation is enabled, read once from the system property project5.metrics
+    */
+    static final boolean ENABLED = Boolean.getBoolean("project5.metrics");
+
+    private static final LongAdder adds = new LongAdder();
+    private static final LongAdder addComparisons = new LongAdder();
+    private static final LongAdder containsCalls = new LongAdder();
+    private static final LongAdder containsComparisons = new LongAdder();
+    private static final LongAdder parentWalks = new LongAdder();
+    private static final LongAdder updateHeightSteps = new LongAdder();
+    private static final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+
+    private TreeMetrics() {
+    }
+
+    /**
+    * Records one add that made the given number of comparisons
+    *
+    * @param comparisons number of elements compared, which is also the depth reached
+    */
+    static void recordAdd(int comparisons) {
+        adds.increment();
+        addComparisons.add(comparisons);
+        maxDepth.accumulate(comparisons);
+    }
+
+    /**
+    * Records one contains that made the given number of comparisons
+    *
+    * @param comparisons number of elements compared, which is also the depth reached
+    */
+    static void recordContains(int comparisons) {
+        containsCalls.increment();
+        containsComparisons.add(comparisons);
+        maxDepth.accumulate(comparisons);
+    }
+
+    /**
+    * Records the parent links one walk of a deep subtree followed on its way back up
+    *
+    * @param steps number of parent links followed
+    */
+    static void recordParentWalk(long steps) {
+        parentWalks.add(steps);
+    }
+
+    /**
+    * Records the nodes one updateHeight went through
+    *
+    * @param steps number of nodes updated
+    */
+    static void recordUpdateHeight(int steps) {
+        updateHeightSteps.add(steps);
+    }
+
+    static long adds() {
+        return adds.sum();
+    }
+
+    static long addComparisons() {
+        return addComparisons.sum();
+    }
+
+    static long containsCalls() {
+        return containsCalls.sum();
+    }
+
+    static long containsComparisons() {
+        return containsComparisons.sum();
+    }
+
+    static long parentWalks() {
+        return parentWalks.sum();
+    }
+
+    static long updateHeightSteps() {
+        return updateHeightSteps.sum();
+    }
+
+    static long maxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+    * Sets all counters back to zero
+    */
+    static void reset() {
+        adds.reset();
+        addComparisons.reset();
+        containsCalls.reset();
+        containsComparisons.reset();
+        parentWalks.reset();
+        updateHeightSteps.reset();
+        maxDepth.reset();
+    }
+}
@@ -0,0 +1,137 @@
+package project5;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+* The mazes the benchmarks run on, in these shapes:
+*   random   - nodes added in random order, unbalanced
+*   sorted   - nodes added in ascending order, unbalanced, so the maze degenerates
+*              into a list; building it takes O(n^2), so it is only built up to
+*              MAX_SORTED nodes
+*   avl      - nodes added in ascending order to a self-balancing (AVL) maze
+*   balanced - nodes bulk-built with buildBalanced
+*   complete - nodes added middle first without balancing and without traps, so the
+*              search cannot prune any of the maze
+*
+* @author Carsten Kaiser
+*/
+final class BenchmarkMazes {
+    //largest degenerate maze that is built, a sorted maze of 10^4 nodes takes 5*10^7 comparisons
+    static final int MAX_SORTED = 10000;
+
+    private BenchmarkMazes() {
+    }
+
+    /**
+    * Creates the nodes of a maze in the order they are added for the given shape
+    * Labels are fixed-width base 36 numbers, so their order matches the numbers
+    *
+    * @param shape random, sorted, avl, balanced or complete
+    * @param size number of nodes
+    * @return nodes the nodes in insertion order
+    * @throws IllegalArgumentException if the shape is unknown
+    */
+    static MazeNode[] createNodes(String shape, int size) {
+        Random random = new Random(42);
+        int width = Integer.toString(Math.max(size - 1, 1), 36).length();
+        MazeNode[] nodes = new MazeNode[size];
+        for (int i = 0; i < size; i++) {
+            String digits = Integer.toString(i, 36);
+            StringBuilder label = new StringBuilder(width);
+            for (int pad = digits.length(); pad < width; pad++) {
+                label.append('0');
+            }
+            label.append(digits);
+
+            //mostly positive life points and a few traps, so that there are exits to find
+            int lifePoints = shape.equals("complete") ? 1 : random.nextInt(20) == 0 ? -5 : 1 + random.nextInt(2);
+            nodes[i] = new MazeNode(label.toString(), lifePoints);
+        }
+
+        if (shape.equals("random")) {
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                MazeNode swap = nodes[i];
+                nodes[i] = nodes[j];
+                nodes[j] = swap;
+            }
+        } else if (shape.equals("complete")) {
+            //the middle of every range before the middles of its halves, in breadth-first
+            //order, gives the most balanced shape without relying on balancing
+            MazeNode[] sorted = nodes;
+            nodes = new MazeNode[size];
+            int[] ranges = new int[2 * size + 2];
+            int head = 0;
+            int tail = 0;
+            int added = 0;
+            ranges[tail++] = 0;
+            ranges[tail++] = size - 1;
+            while (head < tail) {
+                int low = ranges[head++];
+                int high = ranges[head++];
+                if (low <= high) {
+                    int middle = (low + high) >>> 1;
+                    nodes[added++] = sorted[middle];
+                    if (low < middle) {
+                        ranges[tail++] = low;
+                        ranges[tail++] = middle - 1;
+                    }
+                    if (middle < high) {
+                        ranges[tail++] = middle + 1;
+                        ranges[tail++] = high;
+                    }
+                }
+            }
+        } else if (!shape.equals("sorted") && !shape.equals("avl") && !shape.equals("balanced")) {
+            throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        return nodes;
+    }
+
+    /**
+    * Builds a maze of the given shape from the nodes
+    *
+    * @param shape random, sorted, avl, balanced or complete
+    * @param nodes the nodes in insertion order
+    * @return maze the built maze
+    */
+    static Maze build(String shape, MazeNode[] nodes) {
+        if (shape.equals("balanced")) {
+            Maze maze = new Maze();
+            maze.buildBalanced(nodes);
+            return maze;
+        }
+
+        Maze maze = new Maze(shape.equals("avl"));
+        for (MazeNode node : nodes) {
+            maze.add(node);
+        }
+        return maze;
+    }
+
+    /**
+    * Writes the nodes to a temporary maze file that is deleted when the JVM exits
+    *
+    * @param nodes the nodes to write, in order
+    * @return file the maze file
+    * @throws IOException if the file cannot be written
+    */
+    static Path writeMazeFile(MazeNode[] nodes) throws IOException {
+        Path file = Files.createTempFile("maze-benchmark", ".txt");
+        file.toFile().deleteOnExit();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (MazeNode node : nodes) {
+                writer.write(node.getLabel());
+                writer.write(' ');
+                writer.write(Integer.toString(node.getLifePoints()));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+}
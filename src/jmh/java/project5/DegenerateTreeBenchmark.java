@@ -0,0 +1,25 @@
+package project5;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+* The tree operations on a maze built from sorted input without balancing, which
+* degenerates into a list as deep as it is large. Building it takes O(n^2), so the
+* sizes stop at BenchmarkMazes.MAX_SORTED
+*
+* @author Carsten Kaiser
+*/
+public class DegenerateTreeBenchmark extends TreeOperationsBenchmark {
+    @Param({"1000", "10000"})
+    public int size;
+
+    @Override
+    protected int size() {
+        return size;
+    }
+
+    @Override
+    protected String shape() {
+        return "sorted";
+    }
+}
@@ -0,0 +1,77 @@
+package project5;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* How the parallel exit-path search scales with the number of threads. threads=0
+* runs the sequential search, which the parallel ones are compared with. The avl
+* shape has a few traps that prune much of the maze, the complete shape has none,
+* so every node on the way to the last level is searched:
+*
+*   java -jar target/benchmarks.jar ParallelSearchBenchmark -p threads=0,1,8 -p threshold=1024
+*
+* @author Carsten Kaiser
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelSearchBenchmark {
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"avl", "complete"})
+    public String shape;
+
+    @Param({"0", "1", "2", "4"})
+    public int threads;
+
+    @Param({"4096"})
+    public int threshold;
+
+    private Maze maze;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        maze = BenchmarkMazes.build(shape, BenchmarkMazes.createNodes(shape, size));
+        pool = threads == 0 ? null : new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+    * Searches the whole maze. The action does nothing, so that both searches do the same work
+    * and the parallel one is not slowed down by threads that share a counter
+    */
+    @Benchmark
+    public void search() {
+        if (pool == null) {
+            maze.forEachAvailablePath(path -> { });
+        } else {
+            maze.forEachAvailablePath(path -> { }, pool, threshold);
+        }
+    }
+}
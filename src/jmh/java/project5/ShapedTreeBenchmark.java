@@ -0,0 +1,30 @@
+package project5;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+* The tree operations on mazes that stay O(log n) deep or close to it:
+* random insertion order, sorted input to an AVL maze, and bulk-built mazes
+* A maze of 10^7 nodes takes a few gigabytes, so the forked JVM gets a larger heap
+*
+* @author Carsten Kaiser
+*/
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ShapedTreeBenchmark extends TreeOperationsBenchmark {
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"random", "avl", "balanced"})
+    public String shape;
+
+    @Override
+    protected int size() {
+        return size;
+    }
+
+    @Override
+    protected String shape() {
+        return shape;
+    }
+}
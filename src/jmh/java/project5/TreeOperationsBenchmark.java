@@ -0,0 +1,153 @@
+package project5;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* JMH benchmarks of the core tree operations: building a maze (add with its height
+* and balance updates), add and remove churn, the three iterators, get(int), the path
+* search of Maze and parsing a maze file
+*
+* Each benchmark reports throughput and average time; run with -prof gc for the
+* allocation rate. The sizes and shapes are parameters of the subclasses, since
+* the degenerate sorted shape can only be built for small sizes:
+*
+*   mvn -B -P jmh package
+*   java -jar target/benchmarks.jar -prof gc
+*   java -jar target/benchmarks.jar ShapedTreeBenchmark -p size=10000000 -p shape=balanced -prof gc
+*
+* @author Carsten Kaiser
+*/
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class TreeOperationsBenchmark {
+    private MazeNode[] nodes;
+    private Maze maze;
+    private Path file;
+    private MazeLoader loader;
+    private SplittableRandom random;
+
+    /**
+    * Returns the number of nodes of the maze
+    *
+    * @return size the number of nodes
+    */
+    protected abstract int size();
+
+    /**
+    * Returns the shape of the maze, one of the shapes of BenchmarkMazes
+    *
+    * @return shape random, sorted, avl or balanced
+    */
+    protected abstract String shape();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        nodes = BenchmarkMazes.createNodes(shape(), size());
+        maze = BenchmarkMazes.build(shape(), nodes);
+        file = BenchmarkMazes.writeMazeFile(nodes);
+        loader = new MazeLoader(new PrintStream(OutputStream.nullOutputStream()));
+        random = new SplittableRandom(7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+    * Builds the whole maze, one node at a time or in bulk for the balanced shape
+    */
+    @Benchmark
+    public Maze build() {
+        return BenchmarkMazes.build(shape(), nodes);
+    }
+
+    /**
+    * Adds a node next to an existing one and removes it again, so the maze keeps its shape
+    */
+    @Benchmark
+    public boolean churn() {
+        MazeNode node = nodes[random.nextInt(nodes.length)];
+        MazeNode extra = new MazeNode(node.getLabel() + "~", 1);
+        maze.add(extra);
+        return maze.remove(extra);
+    }
+
+    @Benchmark
+    public long iterator() {
+        return sum(maze.iterator());
+    }
+
+    @Benchmark
+    public long preorder() {
+        return sum(maze.preorderIterator());
+    }
+
+    @Benchmark
+    public long postorder() {
+        return sum(maze.postorderIterator());
+    }
+
+    @Benchmark
+    public MazeNode get() {
+        return maze.get(random.nextInt(nodes.length));
+    }
+
+    /**
+    * Searches the whole maze and counts the exits
+    */
+    @Benchmark
+    public long paths() {
+        long[] exits = new long[1];
+        maze.forEachAvailablePath(path -> exits[0]++);
+        return exits[0];
+    }
+
+    /**
+    * Parses the maze file without building a maze
+    */
+    @Benchmark
+    public long parse() throws IOException {
+        long[] lifePoints = new long[1];
+        loader.load(file, node -> lifePoints[0] += node.getLifePoints());
+        return lifePoints[0];
+    }
+
+    /**
+    * Walks an iterator to the end
+    *
+    * @param iterator the iterator to walk
+    * @return sum the sum of the life points of the elements
+    */
+    private static long sum(Iterator<MazeNode> iterator) {
+        long sum = 0;
+        while (iterator.hasNext()) {
+            sum += iterator.next().getLifePoints();
+        }
+        return sum;
+    }
+}
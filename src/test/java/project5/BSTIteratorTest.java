@@ -0,0 +1,182 @@
+package project5;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+* Tests of the lazy in-order, pre-order and post-order iterators of BST:
+* traversal order, removal through the iterator and fail-fast behaviour
+*
+* @author Carsten Kaiser
+*/
+class BSTIteratorTest {
+
+    private static BST<Integer> tree(boolean balanced, int... values) {
+        BST<Integer> tree = new BST<>(balanced);
+        for (int value : values) {
+            tree.add(value);
+        }
+        return tree;
+    }
+
+    private static List<Integer> toList(Iterator<Integer> iterator) {
+        List<Integer> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    @Test
+    void traversalOrders() {
+        BST<Integer> tree = tree(false, 4, 2, 6, 1, 3, 5, 7);
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7), toList(tree.iterator()));
+        assertEquals(List.of(4, 2, 1, 3, 6, 5, 7), toList(tree.preorderIterator()));
+        assertEquals(List.of(1, 3, 2, 5, 7, 6, 4), toList(tree.postorderIterator()));
+    }
+
+    @Test
+    void emptyTree() {
+        BST<Integer> tree = new BST<>();
+        for (Iterator<Integer> iterator : List.of(tree.iterator(), tree.preorderIterator(),
+                                                  tree.postorderIterator())) {
+            assertFalse(iterator.hasNext());
+            assertThrows(NoSuchElementException.class, iterator::next);
+        }
+    }
+
+    @Test
+    void inOrderMatchesTreeSet() {
+        Random random = new Random(1);
+        for (boolean balanced : new boolean[] {false, true}) {
+            BST<Integer> tree = new BST<>(balanced);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < 5000; i++) {
+                int value = random.nextInt(10000);
+                assertEquals(expected.add(value), tree.add(value));
+            }
+            assertEquals(new ArrayList<>(expected), toList(tree.iterator()));
+            assertEquals(expected.size(), toList(tree.preorderIterator()).size());
+            assertEquals(expected.size(), toList(tree.postorderIterator()).size());
+        }
+    }
+
+    @Test
+    void degenerateTreeDoesNotOverflowTheStack() {
+        BST<Integer> tree = new BST<>();
+        int size = 20000;
+        for (int i = 0; i < size; i++) {
+            tree.add(i);
+        }
+        assertEquals(size, tree.height());
+        assertEquals(size, toList(tree.iterator()).size());
+        assertEquals(size, toList(tree.preorderIterator()).size());
+        assertEquals(size, toList(tree.postorderIterator()).size());
+    }
+
+    @Test
+    void iteratorsFailFastAfterModification() {
+        BST<Integer> tree = tree(false, 4, 2, 6, 1, 3, 5, 7);
+        List<Iterator<Integer>> iterators = List.of(tree.iterator(), tree.preorderIterator(),
+                                                    tree.postorderIterator());
+        for (Iterator<Integer> iterator : iterators) {
+            iterator.next();
+        }
+        tree.add(8);
+        for (Iterator<Integer> iterator : iterators) {
+            assertThrows(ConcurrentModificationException.class, iterator::next);
+        }
+
+        Iterator<Integer> iterator = tree.iterator();
+        iterator.next();
+        tree.remove(8);
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+
+    @Test
+    void failedAddDoesNotInvalidateIterators() {
+        BST<Integer> tree = tree(false, 2, 1, 3);
+        Iterator<Integer> iterator = tree.iterator();
+        assertEquals(1, iterator.next());
+        assertFalse(tree.add(3));
+        assertEquals(2, iterator.next());
+    }
+
+    @Test
+    void removeThroughInOrderIterator() {
+        Random random = new Random(2);
+        for (boolean balanced : new boolean[] {false, true}) {
+            BST<Integer> tree = new BST<>(balanced);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < 3000; i++) {
+                int value = random.nextInt(6000);
+                tree.add(value);
+                expected.add(value);
+            }
+
+            List<Integer> seen = new ArrayList<>();
+            Iterator<Integer> iterator = tree.iterator();
+            while (iterator.hasNext()) {
+                int value = iterator.next();
+                seen.add(value);
+                if (value % 3 != 0) {
+                    iterator.remove();
+                }
+            }
+            //every element is still returned once, in order, while others are removed
+            assertEquals(new ArrayList<>(expected), seen);
+
+            expected.removeIf(value -> value % 3 != 0);
+            assertEquals(new ArrayList<>(expected), toList(tree.iterator()));
+            assertEquals(expected.size(), tree.size());
+        }
+    }
+
+    @Test
+    void removeNeedsAPrecedingNext() {
+        BST<Integer> tree = tree(false, 2, 1, 3);
+        Iterator<Integer> iterator = tree.iterator();
+        assertThrows(IllegalStateException.class, iterator::remove);
+        iterator.next();
+        iterator.remove();
+        assertThrows(IllegalStateException.class, iterator::remove);
+        assertTrue(iterator.hasNext());
+        assertEquals(2, iterator.next());
+    }
+
+    @Test
+    void removeAfterOutsideModificationFailsFast() {
+        BST<Integer> tree = tree(false, 2, 1, 3);
+        Iterator<Integer> iterator = tree.iterator();
+        iterator.next();
+        tree.add(4);
+        assertThrows(ConcurrentModificationException.class, iterator::remove);
+    }
+
+    @Test
+    void preOrderAndPostOrderDoNotRemove() {
+        BST<Integer> tree = tree(false, 2, 1, 3);
+        for (Iterator<Integer> iterator : List.of(tree.preorderIterator(), tree.postorderIterator())) {
+            iterator.next();
+            assertThrows(UnsupportedOperationException.class, iterator::remove);
+        }
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    void equalsComparesElementsInOrder() {
+        assertEquals(tree(false, 1, 2, 3), tree(true, 3, 2, 1));
+        assertFalse(tree(false, 1, 2, 3).equals(tree(false, 1, 2, 4)));
+        assertFalse(tree(false, 1, 2, 3).equals(tree(false, 1, 2)));
+    }
+}
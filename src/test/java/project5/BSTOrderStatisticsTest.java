@@ -0,0 +1,89 @@
+package project5;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+* Tests of get(int), rank and countInRange of BST against the sizes of TreeSet
+* views, after random adds and removes, with and without AVL rotations
+*
+* @author Carsten Kaiser
+*/
+class BSTOrderStatisticsTest {
+
+    //checks every index, and ranks and ranges around every value the tree may hold
+    private static void assertMatches(TreeSet<Integer> expected, BST<Integer> tree, int range,
+                                      Random random, String message) {
+        assertEquals(expected.size(), tree.size(), message);
+        List<Integer> sorted = new ArrayList<>(expected);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), tree.get(i), message);
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.get(-1), message);
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.get(sorted.size()), message);
+
+        for (int value = -1; value <= range; value++) {
+            assertEquals(expected.headSet(value).size(), tree.rank(value), message);
+        }
+        for (int i = 0; i < 200; i++) {
+            int lo = random.nextInt(range + 2) - 1;
+            int hi = random.nextInt(range + 2) - 1;
+            int count = lo > hi ? 0 : expected.subSet(lo, true, hi, true).size();
+            assertEquals(count, tree.countInRange(lo, hi), message + " [" + lo + ", " + hi + "]");
+        }
+    }
+
+    @Test
+    void orderStatisticsMatchTreeSet() {
+        Random random = new Random(3);
+        for (boolean balanced : new boolean[] {false, true}) {
+            for (int trial = 0; trial < 30; trial++) {
+                int range = 1 + random.nextInt(trial % 5 == 0 ? 3000 : 100);
+                BST<Integer> tree = new BST<>(balanced);
+                TreeSet<Integer> expected = new TreeSet<>();
+                String message = "trial " + trial + (balanced ? " balanced" : "");
+
+                for (int step = 0; step < 4 * range; step++) {
+                    int value = random.nextInt(range);
+                    //more removes in the second half, so the tree shrinks again
+                    if (random.nextInt(4) < (step < 2 * range ? 1 : 3)) {
+                        assertEquals(expected.remove(value), tree.remove(value), message);
+                    } else {
+                        assertEquals(expected.add(value), tree.add(value), message);
+                    }
+                    if (step % (range / 4 + 1) == 0) {
+                        assertMatches(expected, tree, range, random, message + " step " + step);
+                    }
+                }
+                assertMatches(expected, tree, range, random, message);
+            }
+        }
+    }
+
+    @Test
+    void orderStatisticsFollowABulkBuild() {
+        Random random = new Random(4);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Integer[] values = new Integer[2000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(5000);
+            expected.add(values[i]);
+        }
+        BST<Integer> tree = new BST<>(true);
+        tree.buildBalanced(values);
+        assertMatches(expected, tree, 5000, random, "bulk");
+
+        for (int i = 0; i < 1000; i++) {
+            int value = random.nextInt(5000);
+            assertEquals(expected.remove(value), tree.remove(value));
+        }
+        assertMatches(expected, tree, 5000, random, "bulk and removes");
+    }
+}
@@ -0,0 +1,167 @@
+package project5;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+* Tests of the set operations of BST against TreeSet, for trees of similar sizes,
+* which are merged, and of very different sizes, which are probed
+*
+* @author Carsten Kaiser
+*/
+class BSTSetAlgebraTest {
+    //pairs of sizes; the lopsided ones take the lookup path instead of the merge
+    private static final int[][] SIZES = {
+        {0, 0}, {0, 100}, {100, 0}, {1, 1}, {500, 700}, {3, 5000}, {5000, 3}, {40, 4000}
+    };
+
+    private static List<Integer> toList(BST<Integer> tree) {
+        List<Integer> list = new ArrayList<>();
+        tree.forEach(list::add);
+        return list;
+    }
+
+    private static TreeSet<Integer> randomSet(Random random, int size, int range) {
+        TreeSet<Integer> set = new TreeSet<>();
+        while (set.size() < size) {
+            set.add(random.nextInt(range));
+        }
+        return set;
+    }
+
+    private static BST<Integer> tree(boolean balanced, TreeSet<Integer> set) {
+        BST<Integer> tree = new BST<>(balanced);
+        List<Integer> shuffled = new ArrayList<>(set);
+        Collections.shuffle(shuffled, new Random(set.size()));
+        for (int value : shuffled) {
+            tree.add(value);
+        }
+        return tree;
+    }
+
+    //the results are built balanced, as low as a complete tree
+    private static void assertBuiltBalanced(BST<Integer> tree) {
+        int minimum = 32 - Integer.numberOfLeadingZeros(tree.size());
+        assertEquals(minimum, tree.height());
+    }
+
+    @Test
+    void operationsMatchTreeSet() {
+        Random random = new Random(8);
+        for (boolean balanced : new boolean[] {false, true}) {
+            for (int[] sizes : SIZES) {
+                int range = 2 * (sizes[0] + sizes[1]) + 1;
+                TreeSet<Integer> a = randomSet(random, sizes[0], range);
+                TreeSet<Integer> b = randomSet(random, sizes[1], range);
+                BST<Integer> treeA = tree(balanced, a);
+                BST<Integer> treeB = tree(balanced, b);
+
+                TreeSet<Integer> union = new TreeSet<>(a);
+                union.addAll(b);
+                TreeSet<Integer> intersection = new TreeSet<>(a);
+                intersection.retainAll(b);
+                TreeSet<Integer> difference = new TreeSet<>(a);
+                difference.removeAll(b);
+
+                String sizeString = sizes[0] + "/" + sizes[1];
+                BST<Integer> result = treeA.union(treeB);
+                assertEquals(new ArrayList<>(union), toList(result), sizeString);
+                assertEquals(union.size(), result.size(), sizeString);
+                assertBuiltBalanced(result);
+                result = treeA.intersection(treeB);
+                assertEquals(new ArrayList<>(intersection), toList(result), sizeString);
+                assertBuiltBalanced(result);
+                result = treeA.difference(treeB);
+                assertEquals(new ArrayList<>(difference), toList(result), sizeString);
+                assertBuiltBalanced(result);
+
+                assertEquals(b.containsAll(a), treeA.isSubsetOf(treeB), sizeString);
+                assertTrue(treeA.intersection(treeB).isSubsetOf(treeB), sizeString);
+                assertTrue(treeA.difference(treeB).isSubsetOf(treeA), sizeString);
+                assertTrue(treeA.isSubsetOf(treeA.union(treeB)), sizeString);
+
+                //neither operand is changed
+                assertEquals(new ArrayList<>(a), toList(treeA), sizeString);
+                assertEquals(new ArrayList<>(b), toList(treeB), sizeString);
+            }
+        }
+    }
+
+    @Test
+    void subsetsTakeTheProbePath() {
+        Random random = new Random(9);
+        TreeSet<Integer> large = randomSet(random, 5000, 20000);
+        List<Integer> values = new ArrayList<>(large);
+        TreeSet<Integer> small = new TreeSet<>();
+        for (int i = 0; i < 10; i++) {
+            small.add(values.get(random.nextInt(values.size())));
+        }
+        BST<Integer> treeLarge = tree(true, large);
+        BST<Integer> treeSmall = tree(true, small);
+
+        assertTrue(treeSmall.isSubsetOf(treeLarge));
+        assertFalse(treeLarge.isSubsetOf(treeSmall));
+        assertEquals(new ArrayList<>(small), toList(treeLarge.intersection(treeSmall)));
+        assertEquals(0, treeSmall.difference(treeLarge).size());
+
+        treeSmall.add(-1);
+        assertFalse(treeSmall.isSubsetOf(treeLarge));
+    }
+
+    @Test
+    void hashCodeIsConsistentWithEquals() {
+        Random random = new Random(10);
+        TreeSet<Integer> set = randomSet(random, 1000, 5000);
+        BST<Integer> plain = tree(false, set);
+        BST<Integer> balanced = tree(true, set);
+        assertEquals(plain, balanced);
+        assertEquals(plain.hashCode(), balanced.hashCode());
+        assertEquals(set.hashCode(), plain.hashCode());
+
+        balanced.remove(set.first());
+        assertNotEquals(plain, balanced);
+        assertEquals(plain, plain.union(balanced));
+        assertEquals(plain.hashCode(), plain.union(balanced).hashCode());
+    }
+
+    @Test
+    void nullOtherIsRejected() {
+        BST<Integer> tree = new BST<>();
+        assertThrows(NullPointerException.class, () -> tree.union(null));
+        assertThrows(NullPointerException.class, () -> tree.intersection(null));
+        assertThrows(NullPointerException.class, () -> tree.difference(null));
+        assertThrows(NullPointerException.class, () -> tree.isSubsetOf(null));
+    }
+
+    @Test
+    void mazeOperationsReturnMazesAndKeepTheirOwnNodes() {
+        Maze first = new Maze(false);
+        Maze second = new Maze(false);
+        MazeNode shared = new MazeNode("b", 1);
+        first.add(new MazeNode("a", 1));
+        first.add(shared);
+        second.add(new MazeNode("b", 2));
+        second.add(new MazeNode("c", 3));
+
+        Maze union = first.union(second);
+        assertEquals(3, union.size());
+        assertSame(shared, union.get(1));
+        Maze intersection = first.intersection(second);
+        assertEquals(1, intersection.size());
+        assertSame(shared, intersection.get(0));
+        Maze difference = first.difference(second);
+        assertEquals("a", difference.get(0).getLabel());
+    }
+}
@@ -0,0 +1,133 @@
+package project5;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+* Compares the exits ExitIndex finds by binary search with a search of the
+* whole maze for every starting life
+*
+* @author Carsten Kaiser
+*/
+class ExitIndexTest {
+
+    /**
+    * Walks every node of the maze, starting with the given life points, and
+    * adds the exits on the last level that are reached with life left
+    */
+    private static void reachable(BST<MazeNode>.Node node, int depth, long lifePoints, int height,
+                                  List<MazeNode> exits) {
+        long life = lifePoints + node.data.getLifePoints();
+        if (life <= 0) {
+            return;
+        }
+        if (node.left == null && node.right == null) {
+            if (depth == height - 1) {
+                exits.add(node.data);
+            }
+            return;
+        }
+        if (node.left != null) {
+            reachable(node.left, depth + 1, life - 1, height, exits);
+        }
+        if (node.right != null) {
+            reachable(node.right, depth + 1, life - 1, height, exits);
+        }
+    }
+
+    private static List<MazeNode> reachable(Maze maze, int lifePoints) {
+        List<MazeNode> exits = new ArrayList<>();
+        if (maze.root != null) {
+            reachable(maze.root, 0, lifePoints, maze.height(), exits);
+        }
+        return exits;
+    }
+
+    //random labels in insertion order, or sorted labels for a balanced maze, with traps and big rewards
+    private static Maze randomMaze(Random random, int trial) {
+        Maze maze = new Maze(trial % 2 == 0);
+        int size = random.nextInt(trial % 10 == 0 ? 2000 : 80);
+        for (int i = 0; i < size; i++) {
+            String label = trial % 2 == 0 ? String.format("%05d", i)
+                                          : Integer.toString(random.nextInt(size * 3), 36);
+            int lifePoints = random.nextInt(8) == 0 ? random.nextInt(40) - 20 : random.nextInt(5) - 1;
+            maze.add(new MazeNode(label, lifePoints));
+        }
+        return maze;
+    }
+
+    @Test
+    void countsMatchASearchOfTheWholeMaze() {
+        Random random = new Random(16);
+        for (int trial = 0; trial < 300; trial++) {
+            Maze maze = randomMaze(random, trial);
+            ExitIndex index = maze.exitIndex();
+            String message = "trial " + trial;
+
+            assertEquals(reachable(maze, Integer.MAX_VALUE / 2).size(), index.size(), message);
+            for (int lifePoints = -25; lifePoints <= 40; lifePoints++) {
+                List<MazeNode> expected = reachable(maze, lifePoints);
+                Hero hero = new Hero(lifePoints);
+                assertEquals(expected.size(), index.countReachable(lifePoints), message);
+                assertEquals(expected.size(), index.countReachable(hero), message);
+                assertEquals(new HashSet<>(expected), new HashSet<>(index.reachableExits(hero)), message);
+            }
+        }
+    }
+
+    @Test
+    void batchCountsMatchSingleCounts() {
+        Random random = new Random(17);
+        for (int trial = 0; trial < 100; trial++) {
+            Maze maze = randomMaze(random, trial);
+            ExitIndex index = maze.exitIndex();
+
+            //unsorted, with repeats and negative life points
+            Hero[] heroes = new Hero[random.nextInt(50)];
+            int[] expected = new int[heroes.length];
+            for (int i = 0; i < heroes.length; i++) {
+                heroes[i] = new Hero(random.nextInt(60) - 20);
+                expected[i] = reachable(maze, heroes[i].getActiveLifePoints()).size();
+            }
+            assertArrayEquals(expected, index.countReachable(heroes), "trial " + trial);
+        }
+    }
+
+    @Test
+    void heroWithoutLifePointsFindsThePrintedPaths() {
+        Random random = new Random(18);
+        for (int trial = 0; trial < 300; trial++) {
+            Maze maze = randomMaze(random, trial);
+            String message = "trial " + trial;
+            assertEquals(maze.countAvailablePaths(), maze.exitIndex().countReachable(new Hero(0)), message);
+
+            Set<MazeNode> exits = new HashSet<>();
+            maze.availableExits((exit, lifePoints) -> exits.add(exit));
+            assertEquals(exits, new HashSet<>(maze.exitIndex().reachableExits(new Hero(0))), message);
+        }
+    }
+
+    @Test
+    void indexFollowsChangesOfTheMaze() {
+        Maze maze = new Maze();
+        maze.add(new MazeNode("M", 1));
+        maze.add(new MazeNode("F", 1));
+        assertEquals(1, maze.exitIndex().countReachable(0));
+
+        //a trap on the only exit
+        maze.remove(new MazeNode("F", 1));
+        maze.add(new MazeNode("F", -5));
+        assertEquals(0, maze.exitIndex().countReachable(5));
+        assertEquals(1, maze.exitIndex().countReachable(6));
+        assertEquals(0, reachable(maze, 5).size());
+        assertEquals(1, reachable(maze, 6).size());
+    }
+}
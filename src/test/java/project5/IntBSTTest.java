@@ -0,0 +1,149 @@
+package project5;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.IntSupplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+* Tests of IntBST against TreeSet: updates, navigation, indexing and the
+* primitive iterator, with and without balancing
+*
+* @author Carsten Kaiser
+*/
+class IntBSTTest {
+
+    private static List<Integer> toList(IntBST tree) {
+        List<Integer> list = new ArrayList<>();
+        tree.iterator().forEachRemaining((int value) -> list.add(value));
+        return list;
+    }
+
+    //TreeSet returns null where IntBST throws NoSuchElementException
+    private static void assertNavigation(Integer expected, IntSupplier actual) {
+        if (expected == null) {
+            assertThrows(NoSuchElementException.class, actual::getAsInt);
+        } else {
+            assertEquals(expected, actual.getAsInt());
+        }
+    }
+
+    @Test
+    void updatesMatchTreeSet() {
+        Random random = new Random(6);
+        for (boolean balanced : new boolean[] {false, true}) {
+            IntBST tree = new IntBST(balanced);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < 5000; i++) {
+                int value = random.nextInt(2000) - 1000;
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(value), tree.remove(value));
+                } else {
+                    assertEquals(expected.add(value), tree.add(value));
+                }
+                assertEquals(expected.size(), tree.size());
+            }
+            assertEquals(new ArrayList<>(expected), toList(tree));
+            assertEquals(expected.toString(), tree.toString());
+            for (int value = -1001; value <= 1001; value++) {
+                assertEquals(expected.contains(value), tree.contains(value));
+            }
+        }
+    }
+
+    @Test
+    void navigationMatchesTreeSet() {
+        Random random = new Random(7);
+        for (boolean balanced : new boolean[] {false, true}) {
+            IntBST tree = new IntBST(balanced);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < 1000; i++) {
+                int value = random.nextInt(10000);
+                tree.add(value);
+                expected.add(value);
+            }
+
+            for (int probe = -1; probe <= 10001; probe += 3) {
+                int value = probe;
+                assertNavigation(expected.ceiling(value), () -> tree.ceiling(value));
+                assertNavigation(expected.floor(value), () -> tree.floor(value));
+                assertNavigation(expected.higher(value), () -> tree.higher(value));
+                assertNavigation(expected.lower(value), () -> tree.lower(value));
+            }
+            assertEquals(expected.first(), tree.first());
+            assertEquals(expected.last(), tree.last());
+            List<Integer> sorted = new ArrayList<>(expected);
+            for (int i = 0; i < sorted.size(); i++) {
+                assertEquals(sorted.get(i), tree.get(i));
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> tree.get(sorted.size()));
+            assertThrows(IndexOutOfBoundsException.class, () -> tree.get(-1));
+        }
+    }
+
+    @Test
+    void extremeValues() {
+        IntBST tree = new IntBST(true);
+        tree.add(Integer.MAX_VALUE);
+        tree.add(Integer.MIN_VALUE);
+        tree.add(0);
+        assertEquals(Integer.MIN_VALUE, tree.first());
+        assertEquals(Integer.MAX_VALUE, tree.last());
+        assertThrows(NoSuchElementException.class, () -> tree.higher(Integer.MAX_VALUE));
+        assertThrows(NoSuchElementException.class, () -> tree.lower(Integer.MIN_VALUE));
+    }
+
+    @Test
+    void emptyAndCleared() {
+        IntBST tree = new IntBST();
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.height());
+        assertThrows(NoSuchElementException.class, tree::first);
+        assertThrows(NoSuchElementException.class, tree::last);
+        assertThrows(NoSuchElementException.class, () -> tree.iterator().nextInt());
+
+        tree.add(1);
+        tree.add(2);
+        tree.clear();
+        assertTrue(tree.isEmpty());
+        assertEquals("[]", tree.toString());
+    }
+
+    @Test
+    void heightDependsOnBalancing() {
+        IntBST plain = new IntBST(false);
+        IntBST balanced = new IntBST(true);
+        for (int i = 0; i < 1 << 12; i++) {
+            plain.add(i);
+            balanced.add(i);
+        }
+        assertEquals(1 << 12, plain.height());
+        assertEquals(13, balanced.height());
+    }
+
+    @Test
+    void iteratorFailsFast() {
+        IntBST tree = new IntBST();
+        tree.add(2);
+        tree.add(1);
+        tree.add(3);
+        PrimitiveIterator.OfInt iterator = tree.iterator();
+        assertEquals(1, iterator.nextInt());
+        assertFalse(tree.add(3));
+        assertEquals(2, iterator.nextInt());
+        tree.remove(3);
+        assertThrows(ConcurrentModificationException.class, iterator::nextInt);
+        assertThrows(UnsupportedOperationException.class, tree.iterator()::remove);
+    }
+}
@@ -0,0 +1,151 @@
+package project5;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+* Tests of LongBST against TreeSet: updates, navigation, indexing and the
+* primitive iterator, with and without balancing
+*
+* @author Carsten Kaiser
+*/
+class LongBSTTest {
+    //spreads the values beyond the int range
+    private static final long STEP = 10_000_000_000L;
+
+    private static List<Long> toList(LongBST tree) {
+        List<Long> list = new ArrayList<>();
+        tree.iterator().forEachRemaining((long value) -> list.add(value));
+        return list;
+    }
+
+    //TreeSet returns null where LongBST throws NoSuchElementException
+    private static void assertNavigation(Long expected, LongSupplier actual) {
+        if (expected == null) {
+            assertThrows(NoSuchElementException.class, actual::getAsLong);
+        } else {
+            assertEquals(expected, actual.getAsLong());
+        }
+    }
+
+    @Test
+    void updatesMatchTreeSet() {
+        Random random = new Random(6);
+        for (boolean balanced : new boolean[] {false, true}) {
+            LongBST tree = new LongBST(balanced);
+            TreeSet<Long> expected = new TreeSet<>();
+            for (int i = 0; i < 5000; i++) {
+                long value = (random.nextInt(2000) - 1000) * STEP;
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(value), tree.remove(value));
+                } else {
+                    assertEquals(expected.add(value), tree.add(value));
+                }
+                assertEquals(expected.size(), tree.size());
+            }
+            assertEquals(new ArrayList<>(expected), toList(tree));
+            assertEquals(expected.toString(), tree.toString());
+            for (long value = -1001 * STEP; value <= 1001 * STEP; value += STEP) {
+                assertEquals(expected.contains(value), tree.contains(value));
+            }
+        }
+    }
+
+    @Test
+    void navigationMatchesTreeSet() {
+        Random random = new Random(7);
+        for (boolean balanced : new boolean[] {false, true}) {
+            LongBST tree = new LongBST(balanced);
+            TreeSet<Long> expected = new TreeSet<>();
+            for (int i = 0; i < 1000; i++) {
+                long value = random.nextInt(10000) * STEP;
+                tree.add(value);
+                expected.add(value);
+            }
+
+            for (long probe = -1; probe <= 10001; probe += 3) {
+                long value = probe * STEP - 1;
+                assertNavigation(expected.ceiling(value), () -> tree.ceiling(value));
+                assertNavigation(expected.floor(value), () -> tree.floor(value));
+                assertNavigation(expected.higher(value), () -> tree.higher(value));
+                assertNavigation(expected.lower(value), () -> tree.lower(value));
+            }
+            assertEquals(expected.first(), tree.first());
+            assertEquals(expected.last(), tree.last());
+            List<Long> sorted = new ArrayList<>(expected);
+            for (int i = 0; i < sorted.size(); i++) {
+                assertEquals(sorted.get(i), tree.get(i));
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> tree.get(sorted.size()));
+            assertThrows(IndexOutOfBoundsException.class, () -> tree.get(-1));
+        }
+    }
+
+    @Test
+    void extremeValues() {
+        LongBST tree = new LongBST(true);
+        tree.add(Long.MAX_VALUE);
+        tree.add(Long.MIN_VALUE);
+        tree.add(0);
+        assertEquals(Long.MIN_VALUE, tree.first());
+        assertEquals(Long.MAX_VALUE, tree.last());
+        assertThrows(NoSuchElementException.class, () -> tree.higher(Long.MAX_VALUE));
+        assertThrows(NoSuchElementException.class, () -> tree.lower(Long.MIN_VALUE));
+    }
+
+    @Test
+    void emptyAndCleared() {
+        LongBST tree = new LongBST();
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.height());
+        assertThrows(NoSuchElementException.class, tree::first);
+        assertThrows(NoSuchElementException.class, tree::last);
+        assertThrows(NoSuchElementException.class, () -> tree.iterator().nextLong());
+
+        tree.add(1);
+        tree.add(2);
+        tree.clear();
+        assertTrue(tree.isEmpty());
+        assertEquals("[]", tree.toString());
+    }
+
+    @Test
+    void heightDependsOnBalancing() {
+        LongBST plain = new LongBST(false);
+        LongBST balanced = new LongBST(true);
+        for (int i = 0; i < 1 << 12; i++) {
+            plain.add(i);
+            balanced.add(i);
+        }
+        assertEquals(1 << 12, plain.height());
+        assertEquals(13, balanced.height());
+    }
+
+    @Test
+    void iteratorFailsFast() {
+        LongBST tree = new LongBST();
+        tree.add(2);
+        tree.add(1);
+        tree.add(3);
+        PrimitiveIterator.OfLong iterator = tree.iterator();
+        assertEquals(1L, iterator.nextLong());
+        assertFalse(tree.add(3));
+        assertEquals(2L, iterator.nextLong());
+        tree.remove(3);
+        assertThrows(ConcurrentModificationException.class, iterator::nextLong);
+        assertThrows(UnsupportedOperationException.class, tree.iterator()::remove);
+    }
+}
@@ -0,0 +1,119 @@
+package project5;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+* Tests of MazeLoader: line breaks, malformed and skipped lines, the range of
+* the life points, and lines on the boundaries of the mapped chunks
+*
+* @author Carsten Kaiser
+*/
+class MazeLoaderTest {
+    private static final String NEWLINE = System.lineSeparator();
+
+    @TempDir
+    Path directory;
+
+    private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    private MazeLoader loader;
+
+    //loads the text with the given chunk size and returns the nodes as LABEL POINTS
+    private List<String> load(String text, int chunkSize) throws IOException {
+        Path file = directory.resolve("maze.txt");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        errors.reset();
+        loader = new MazeLoader(new PrintStream(errors, true, StandardCharsets.UTF_8), chunkSize);
+        List<String> nodes = new ArrayList<>();
+        loader.load(file, node -> nodes.add(node.getLabel() + " " + node.getLifePoints()));
+        return nodes;
+    }
+
+    private List<String> load(String text) throws IOException {
+        return load(text, 1 << 30);
+    }
+
+    private String errors() {
+        return errors.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void everyLineBreakEndsALine() throws IOException {
+        assertEquals(List.of("A 1", "B 2", "C 3", "D 4"), load("A 1\r\nB 2\rC 3\nD 4"));
+        assertEquals(4, loader.getLines());
+        assertEquals(List.of("A 1", "B 2"), load("A 1\r\rB 2\r\n"));
+        assertEquals(1, loader.getMalformedLines());
+        assertEquals(NEWLINE, errors());
+    }
+
+    @Test
+    void blankAndOneTokenLinesAreMalformed() throws IOException {
+        assertEquals(List.of("A 1", "D 4"), load("A 1\n\nB\n \t \n  C  \nD 4\n"));
+        assertEquals(4, loader.getMalformedLines());
+        assertEquals(0, loader.getSkippedLines());
+        assertEquals("" + NEWLINE + "B" + NEWLINE + " \t " + NEWLINE + "  C  " + NEWLINE, errors());
+    }
+
+    @Test
+    void lifePointsHaveToBeInts() throws IOException {
+        String text = "A +5\nB -5\nC 2147483647\nD -2147483648\nE 2147483648\nF -2147483649\n"
+                    + "G +\nH -\nI 12x\nJ 99999999999999999999\nK 0x1\nL 007\n";
+        assertEquals(List.of("A 5", "B -5", "C 2147483647", "D -2147483648", "L 7"), load(text));
+        assertEquals(7, loader.getSkippedLines());
+        assertEquals(0, loader.getMalformedLines());
+        assertEquals("", errors());
+        assertEquals(12, loader.getLines());
+        assertEquals(5, loader.getNodes());
+    }
+
+    @Test
+    void tokensAfterTheLifePointsAreIgnored() throws IOException {
+        assertEquals(List.of("A 1", "B -2", "Äß 3"), load("  A 1 extra tokens\nB\t-2 x\nÄß 3 ü\n"));
+        assertEquals("", errors());
+    }
+
+    @Test
+    void linesOnChunkBoundariesAreReadWhole() throws IOException {
+        Random random = new Random(9);
+        String[] breaks = {"\n", "\r", "\r\n"};
+        StringBuilder text = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        int longest = 0;
+        for (int i = 0; i < 300; i++) {
+            String line;
+            if (random.nextInt(10) == 0) {
+                line = random.nextBoolean() ? "" : "X" + i;
+            } else {
+                line = "N" + i + " ".repeat(1 + random.nextInt(3)) + (random.nextInt(200) - 100);
+                expected.add(line.replaceAll(" +", " "));
+            }
+            longest = Math.max(longest, line.length());
+            text.append(line).append(breaks[random.nextInt(breaks.length)]);
+        }
+
+        List<String> whole = load(text.toString());
+        String wholeErrors = errors();
+        long malformed = loader.getMalformedLines();
+        assertEquals(expected, whole);
+        //a chunk has to hold a line and its line break, \r\n may still be split
+        for (int chunkSize = longest + 1; chunkSize <= 64; chunkSize++) {
+            String message = "chunk size " + chunkSize;
+            assertEquals(expected, load(text.toString(), chunkSize), message);
+            assertEquals(wholeErrors, errors(), message);
+            assertEquals(malformed, loader.getMalformedLines(), message);
+            assertEquals(text.length(), loader.getBytes(), message);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package project5;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+* Compares the pruned path searches of Maze, CompactMaze, MazeSnapshot and
+* ConcurrentMaze with a plain search that visits every node of the maze
+*
+* @author Carsten Kaiser
+*/
+class MazePathsTest {
+    private static final String NEWLINE = System.lineSeparator();
+
+    @TempDir
+    Path directory;
+
+    //a node of the reference tree
+    private static final class Node {
+        final MazeNode data;
+        Node left;
+        Node right;
+
+        Node(MazeNode data) {
+            this.data = data;
+        }
+    }
+
+    //one step of the reference search: a node, the life points on arrival and the path above it
+    private record Step(Node node, int lifePoints, List<Node> path) {
+    }
+
+    /**
+    * Builds an unbalanced tree by insertion and prints the paths the way the mazes
+    * do, searching every node without pruning
+    */
+    private static String referencePaths(List<MazeNode> nodes) {
+        Node root = null;
+        int height = 0;
+        for (MazeNode data : nodes) {
+            int depth = 1;
+            if (root == null) {
+                root = new Node(data);
+            } else {
+                Node current = root;
+                while (true) {
+                    int compare = data.compareTo(current.data);
+                    if (compare == 0) {
+                        break;
+                    }
+                    depth++;
+                    if (compare < 0) {
+                        if (current.left == null) {
+                            current.left = new Node(data);
+                            break;
+                        }
+                        current = current.left;
+                    } else {
+                        if (current.right == null) {
+                            current.right = new Node(data);
+                            break;
+                        }
+                        current = current.right;
+                    }
+                }
+            }
+            height = Math.max(height, depth);
+        }
+
+        StringBuilder paths = new StringBuilder();
+        Deque<Step> stack = new ArrayDeque<>();
+        if (root != null) {
+            stack.push(new Step(root, 0, List.of()));
+        }
+        while (!stack.isEmpty()) {
+            Step step = stack.pop();
+            int life = step.lifePoints() + step.node().data.getLifePoints();
+            if (life <= 0) {
+                continue;
+            }
+            List<Node> path = new ArrayList<>(step.path());
+            path.add(step.node());
+            Node node = step.node();
+            if (node.left == null && node.right == null) {
+                if (path.size() == height) {
+                    for (Node visited : path) {
+                        paths.append(visited.data.getLabel()).append(' ');
+                    }
+                    paths.append(NEWLINE);
+                }
+                continue;
+            }
+            if (node.right != null) {
+                stack.push(new Step(node.right, life - 1, path));
+            }
+            if (node.left != null) {
+                stack.push(new Step(node.left, life - 1, path));
+            }
+        }
+        return paths.toString();
+    }
+
+    //sorted, reverse sorted or random labels, with mostly small life points
+    private static List<MazeNode> randomNodes(Random random, int trial) {
+        int size = 1 + random.nextInt(trial % 10 == 0 ? 1000 : 60);
+        int shape = trial % 3;
+        List<MazeNode> nodes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String label = shape == 0 ? String.format("%06d", i)
+                         : shape == 1 ? String.format("%06d", size - i)
+                         : Integer.toString(random.nextInt(size * 3), 36);
+            int lifePoints = random.nextInt(10) == 0 ? random.nextInt(2000) - 1000
+                                                     : random.nextInt(7) - 2;
+            nodes.add(new MazeNode(label, lifePoints));
+        }
+        return nodes;
+    }
+
+    private static String paths(Maze maze) {
+        StringWriter paths = new StringWriter();
+        PrintWriter out = new PrintWriter(paths);
+        maze.printAvailablePaths(out);
+        out.flush();
+        return paths.toString();
+    }
+
+    private static String paths(ConcurrentMaze maze) {
+        StringWriter paths = new StringWriter();
+        PrintWriter out = new PrintWriter(paths);
+        ConcurrentMaze.printAvailablePaths(maze.snapshot(), out);
+        out.flush();
+        return paths.toString();
+    }
+
+    @Test
+    void everyMazeFindsTheReferencePaths() throws IOException {
+        Random random = new Random(11);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (int trial = 0; trial < 600; trial++) {
+                List<MazeNode> nodes = randomNodes(random, trial);
+                String expected = referencePaths(nodes);
+
+                Maze maze = new Maze(false);
+                CompactMaze compact = new CompactMaze();
+                ConcurrentMaze concurrent = new ConcurrentMaze(false);
+                for (MazeNode node : nodes) {
+                    maze.add(node);
+                    compact.add(node);
+                    concurrent.add(node);
+                }
+                String message = "trial " + trial;
+                assertEquals(expected, paths(maze), message);
+                assertEquals(maze.height(), compact.height(), message);
+
+                StringWriter parallel = new StringWriter();
+                PrintWriter out = new PrintWriter(parallel);
+                maze.printAvailablePaths(out, pool, 8);
+                out.flush();
+                assertEquals(expected, parallel.toString(), message);
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                compact.printAvailablePaths(bytes);
+                assertEquals(expected, bytes.toString(StandardCharsets.UTF_8), message);
+
+                Path file = directory.resolve("maze" + trial + ".bin");
+                maze.save(file);
+                bytes.reset();
+                Maze.open(file).printAvailablePaths(bytes);
+                assertEquals(expected, bytes.toString(StandardCharsets.UTF_8), message);
+
+                assertEquals(expected, paths(concurrent), message);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void removalsKeepTheSearchesInStep() {
+        Random random = new Random(12);
+        for (boolean balanced : new boolean[] {false, true}) {
+            for (int trial = 0; trial < 200; trial++) {
+                List<MazeNode> nodes = randomNodes(random, trial);
+                Maze maze = new Maze(balanced);
+                ConcurrentMaze concurrent = new ConcurrentMaze(balanced);
+                for (MazeNode node : nodes) {
+                    maze.add(node);
+                    concurrent.add(node);
+                }
+                for (MazeNode node : nodes) {
+                    if (random.nextInt(3) == 0) {
+                        maze.remove(node);
+                        concurrent.remove(node);
+                    }
+                }
+                assertEquals(paths(maze), paths(concurrent), "trial " + trial);
+            }
+        }
+    }
+
+    @Test
+    void pathIndexFollowsEveryChange() {
+        Random random = new Random(13);
+        for (boolean balanced : new boolean[] {false, true}) {
+            for (int trial = 0; trial < 100; trial++) {
+                List<MazeNode> nodes = randomNodes(random, trial);
+                //the same changes to a maze with the path index and one without
+                Maze indexed = new Maze(balanced);
+                Maze searched = new Maze(balanced);
+                indexed.indexPaths();
+                for (int step = 0; step < 3 * nodes.size() + 10; step++) {
+                    MazeNode node = nodes.get(random.nextInt(nodes.size()));
+                    int change = random.nextInt(50);
+                    if (change == 0) {
+                        MazeNode[] bulk = nodes.subList(0, random.nextInt(nodes.size() + 1))
+                                               .toArray(new MazeNode[0]);
+                        indexed.buildBalanced(bulk);
+                        searched.buildBalanced(bulk);
+                    } else if (change == 1) {
+                        List<MazeNode> bulk = nodes.subList(random.nextInt(nodes.size()), nodes.size());
+                        indexed.load(bulk, false);
+                        searched.load(bulk, false);
+                    } else if (change < 20) {
+                        assertEquals(searched.remove(node), indexed.remove(node));
+                    } else {
+                        assertEquals(searched.add(node), indexed.add(node));
+                    }
+                    String message = "trial " + trial + " step " + step + (balanced ? " balanced" : "");
+                    assertEquals(paths(searched), paths(indexed), message);
+                    assertEquals(searched.countAvailablePaths(), indexed.countAvailablePaths(), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void countsAndExitsMatchThePrintedPaths() {
+        Random random = new Random(14);
+        long exitsFound = 0;
+        for (int trial = 0; trial < 400; trial++) {
+            List<MazeNode> nodes = randomNodes(random, trial);
+            Maze maze = new Maze(trial % 2 == 0);
+            for (MazeNode node : nodes) {
+                maze.add(node);
+            }
+            if (trial % 4 == 1) {
+                maze.indexPaths();
+            }
+            String message = "trial " + trial;
+
+            List<List<MazeNode>> paths = new ArrayList<>();
+            maze.forEachAvailablePath(path -> paths.add(new ArrayList<>(path)));
+            String printed = paths(maze);
+            assertEquals(printed.isEmpty() ? 0 : printed.split(NEWLINE).length, paths.size(), message);
+            assertEquals(paths.size(), maze.countAvailablePaths(), message);
+
+            //the hero starts with no life points, collects the points of every node
+            //on the path and pays one for each move
+            List<MazeNode> exits = new ArrayList<>();
+            List<Integer> remaining = new ArrayList<>();
+            maze.availableExits((exit, lifePoints) -> {
+                exits.add(exit);
+                remaining.add(lifePoints);
+            });
+            assertEquals(paths.size(), exits.size(), message);
+            for (int i = 0; i < paths.size(); i++) {
+                List<MazeNode> path = paths.get(i);
+                int lifePoints = 0;
+                for (MazeNode node : path) {
+                    lifePoints += node.getLifePoints();
+                }
+                lifePoints -= path.size() - 1;
+                assertEquals(path.get(path.size() - 1), exits.get(i), message);
+                assertEquals(lifePoints, (int) remaining.get(i), message);
+            }
+            exitsFound += paths.size();
+        }
+        assertTrue(exitsFound > 1000, exitsFound + " exits");
+    }
+}
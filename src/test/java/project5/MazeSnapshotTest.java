@@ -0,0 +1,111 @@
+package project5;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+* Tests of the snapshot format: a saved maze finds the same paths, and damaged
+* records are rejected when the file is opened even if the checksum matches
+*
+* @author Carsten Kaiser
+*/
+class MazeSnapshotTest {
+    @TempDir
+    Path directory;
+
+    private static Maze maze() {
+        Maze maze = new Maze(false);
+        String[] labels = {"m", "f", "t", "c", "h", "p", "w", "a", "d", "g", "k"};
+        for (int i = 0; i < labels.length; i++) {
+            maze.add(new MazeNode(labels[i], i % 3 + 1));
+        }
+        return maze;
+    }
+
+    private Path save(Maze maze) throws IOException {
+        Path file = directory.resolve("maze.bin");
+        maze.save(file);
+        return file;
+    }
+
+    //changes one int of a record and fixes the checksum, so only the record check can notice
+    private static void corrupt(Path file, int node, int field, int value) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        bytes.putInt(MazeSnapshot.HEADER_SIZE + node * MazeSnapshot.RECORD_SIZE + field, value);
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes.array(), MazeSnapshot.HEADER_SIZE, 
+                        bytes.capacity() - MazeSnapshot.HEADER_SIZE);
+        bytes.putLong(24, checksum.getValue());
+        Files.write(file, bytes.array());
+    }
+
+    @Test
+    void snapshotFindsTheSamePaths() throws IOException {
+        Maze maze = maze();
+        StringWriter expected = new StringWriter();
+        PrintWriter out = new PrintWriter(expected);
+        maze.printAvailablePaths(out);
+        out.flush();
+
+        MazeSnapshot snapshot = Maze.open(save(maze));
+        assertEquals(maze.size(), snapshot.size());
+        assertEquals(maze.height(), snapshot.height());
+        ByteArrayOutputStream paths = new ByteArrayOutputStream();
+        snapshot.printAvailablePaths(paths);
+        assertEquals(expected.toString(), paths.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void emptyMaze() throws IOException {
+        MazeSnapshot snapshot = Maze.open(save(new Maze()));
+        assertEquals(0, snapshot.size());
+        ByteArrayOutputStream paths = new ByteArrayOutputStream();
+        snapshot.printAvailablePaths(paths);
+        assertEquals(0, paths.size());
+    }
+
+    @Test
+    void damagedRecordsAreRejected() throws IOException {
+        int size = maze().size();
+        //field offsets: left 0, right 4, life points 8, label offset 12, height 16, summary 20
+        int[][] damages = {
+            {0, 0, size},           //left child outside the file
+            {1, 0, 0},              //left child pointing back to the root
+            {0, 4, 1},              //right child inside the left subtree
+            {0, 4, -5},             //negative right child
+            {3, 12, -1},            //negative label offset
+            {2, 12, 1 << 20},       //label offset past the label table
+            {4, 16, 7},             //wrong height
+            {4, 20, 1 << 30},       //wrong summary
+            {size - 1, 0, 0},       //the last record pointing back to the root
+        };
+        for (int[] damage : damages) {
+            Path file = save(maze());
+            corrupt(file, damage[0], damage[1], damage[2]);
+            assertThrows(IOException.class, () -> Maze.open(file), 
+                         "record " + damage[0] + " field " + damage[1]);
+        }
+    }
+
+    @Test
+    void damagedChecksumIsRejected() throws IOException {
+        Path file = save(maze());
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> Maze.open(file));
+    }
+}
@@ -0,0 +1,195 @@
+package project5;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+* Tests of PathCache: eviction of the least recently used results, the round
+* trip through the cache directory, and results larger than the memory of the cache
+*
+* @author Carsten Kaiser
+*/
+class PathCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    //a complete maze of 2^levels - 1 nodes in which every one of the 2^(levels-1) leaves is an exit
+    private static Maze completeMaze(int levels) {
+        MazeNode[] nodes = new MazeNode[(1 << levels) - 1];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new MazeNode(String.format("N%05d", i), 1);
+        }
+        Maze maze = new Maze();
+        maze.buildBalanced(nodes);
+        return maze;
+    }
+
+    //the paths as printAvailablePaths writes them without a cache
+    private static byte[] printed(Maze maze) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(buffer)));
+        maze.printAvailablePaths(out);
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    private static byte[] printCached(PathCache cache, String key) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return cache.printCached(key, out) ? out.toByteArray() : null;
+    }
+
+    private List<String> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.endsWith(suffix))
+                        .collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedResultsAreEvicted() {
+        PathCache cache = new PathCache(10);
+        cache.store("a", bytes("aaaa"));
+        cache.store("b", bytes("bbbb"));
+        assertNotNull(cache.get("a"));
+        cache.store("c", bytes("cccc"));
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+        assertEquals(8, cache.getBytes());
+        assertNull(cache.get("b"));
+        assertArrayEquals(bytes("aaaa"), cache.get("a"));
+        assertArrayEquals(bytes("cccc"), cache.get("c"));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        //replacing a result counts only its new size
+        cache.store("c", bytes("cc"));
+        assertEquals(6, cache.getBytes());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void resultsSurviveInTheCacheDirectory() throws IOException {
+        Maze maze = completeMaze(6);
+        byte[] expected = printed(maze);
+
+        PathCache first = new PathCache(1 << 20, directory);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        first.printAvailablePaths("maze", maze, out);
+        assertArrayEquals(expected, out.toByteArray());
+        assertEquals(1, first.getMisses());
+        assertEquals(List.of("maze.paths"), files(".paths"));
+        assertEquals(List.of(), files(".tmp"));
+
+        //a later run finds the file and keeps the result in memory from then on
+        PathCache second = new PathCache(1 << 20, directory);
+        assertArrayEquals(expected, printCached(second, "maze"));
+        assertArrayEquals(expected, printCached(second, "maze"));
+        assertEquals(1, second.getDiskHits());
+        assertEquals(1, second.getHits());
+        assertEquals(0, second.getMisses());
+        assertArrayEquals(expected, new PathCache(1 << 20, directory).get("maze"));
+
+        assertNull(printCached(second, "other"));
+        assertEquals(1, second.getMisses());
+        assertEquals(0, second.getDiskErrors());
+    }
+
+    @Test
+    void largeResultsAreStreamedThroughTheDirectory() throws IOException {
+        Maze maze = completeMaze(10);
+        byte[] expected = printed(maze);
+        assertTrue(expected.length > 1 << 14);
+
+        PathCache cache = new PathCache(1024, directory);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.printAvailablePaths("maze", maze, out);
+        assertArrayEquals(expected, out.toByteArray());
+        assertEquals(0, cache.size());
+        assertArrayEquals(expected, Files.readAllBytes(directory.resolve("maze.paths")));
+        assertEquals(List.of(), files(".tmp"));
+
+        //copied from the file without being kept in memory
+        assertArrayEquals(expected, printCached(cache, "maze"));
+        assertArrayEquals(expected, printCached(cache, "maze"));
+        assertEquals(2, cache.getDiskHits());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    void largeResultsReplaceOlderOnes() throws IOException {
+        byte[] small = bytes("small\n");
+        byte[] large = bytes("large\n".repeat(100));
+
+        PathCache memory = new PathCache(64);
+        memory.store("key", small);
+        memory.store("key", large);
+        assertNull(memory.get("key"));
+        assertEquals(0, memory.size());
+        assertEquals(0, memory.getBytes());
+
+        PathCache disk = new PathCache(64, directory);
+        disk.store("key", small);
+        disk.store("key", large);
+        assertEquals(0, disk.size());
+        assertArrayEquals(large, printCached(disk, "key"));
+        assertArrayEquals(large, disk.get("key"));
+    }
+
+    @Test
+    void failedSearchesLeaveNothingBehind() throws IOException {
+        Maze maze = completeMaze(10);
+        PathCache cache = new PathCache(1 << 20, directory);
+        //a client that goes away after the first few paths
+        OutputStream closed = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                written += length;
+                if (written > 1000) {
+                    throw new IOException("closed");
+                }
+            }
+        };
+
+        assertThrows(IOException.class, () -> cache.printAvailablePaths("maze", maze, closed));
+        assertEquals(0, cache.size());
+        assertEquals(List.of(), files(".tmp"));
+        assertEquals(List.of(), files(".paths"));
+        assertFalse(cache.printCached("maze", new ByteArrayOutputStream()));
+    }
+}
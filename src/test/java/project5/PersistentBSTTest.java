@@ -0,0 +1,300 @@
+package project5;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+* Tests of PersistentBST: old versions never change, the navigation methods
+* agree with TreeSet, and balanced trees stay AVL balanced
+*
+* @author Carsten Kaiser
+*/
+class PersistentBSTTest {
+
+    private static List<Integer> toList(PersistentBST<Integer> tree) {
+        List<Integer> list = new ArrayList<>();
+        tree.forEach(list::add);
+        return list;
+    }
+
+    private static List<Integer> toList(BST<Integer> tree) {
+        List<Integer> list = new ArrayList<>();
+        tree.forEach(list::add);
+        return list;
+    }
+
+    private static PersistentBST<Integer> tree(boolean balanced, TreeSet<Integer> values, Random random) {
+        List<Integer> shuffled = new ArrayList<>(values);
+        Collections.shuffle(shuffled, random);
+        PersistentBST<Integer> tree = new PersistentBST<>(balanced);
+        for (int value : shuffled) {
+            tree = tree.add(value);
+        }
+        return tree;
+    }
+
+    //adds the nodes of a subtree to the set, found by identity
+    private static <E> void collect(PersistentBST.Node<E> node, Map<PersistentBST.Node<E>, Boolean> nodes) {
+        if (node != null) {
+            nodes.put(node, true);
+            collect(node.left, nodes);
+            collect(node.right, nodes);
+        }
+    }
+
+    @Test
+    void addAndRemoveLeaveOldVersionsUnchanged() {
+        PersistentBST<Integer> empty = new PersistentBST<>();
+        PersistentBST<Integer> one = empty.add(2);
+        PersistentBST<Integer> three = one.add(1).add(3);
+        PersistentBST<Integer> two = three.remove(2);
+
+        assertEquals(List.of(), toList(empty));
+        assertEquals(List.of(2), toList(one));
+        assertEquals(List.of(1, 2, 3), toList(three));
+        assertEquals(List.of(1, 3), toList(two));
+        assertEquals(3, three.size());
+        assertEquals(2, two.size());
+    }
+
+    @Test
+    void unchangedTreeIsReturnedAsItIs() {
+        PersistentBST<Integer> tree = new PersistentBST<Integer>().add(1).add(2);
+        assertSame(tree, tree.add(2));
+        assertSame(tree, tree.remove(3));
+    }
+
+    @Test
+    void everyVersionKeepsItsContents() {
+        Random random = new Random(3);
+        for (boolean balanced : new boolean[] {false, true}) {
+            List<PersistentBST<Integer>> versions = new ArrayList<>();
+            List<List<Integer>> contents = new ArrayList<>();
+            PersistentBST<Integer> tree = new PersistentBST<>(balanced);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < 2000; i++) {
+                int value = random.nextInt(500);
+                if (random.nextInt(3) == 0) {
+                    tree = tree.remove(value);
+                    expected.remove(value);
+                } else {
+                    tree = tree.add(value);
+                    expected.add(value);
+                }
+                versions.add(tree);
+                contents.add(new ArrayList<>(expected));
+            }
+
+            for (int i = 0; i < versions.size(); i++) {
+                assertEquals(contents.get(i), toList(versions.get(i)));
+                assertEquals(contents.get(i).size(), versions.get(i).size());
+            }
+        }
+    }
+
+    @Test
+    void navigationMatchesTreeSet() {
+        Random random = new Random(4);
+        PersistentBST<Integer> tree = new PersistentBST<>(true);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 1000; i++) {
+            int value = random.nextInt(5000);
+            tree = tree.add(value);
+            expected.add(value);
+        }
+
+        for (int probe = -1; probe <= 5001; probe += 7) {
+            assertEquals(expected.ceiling(probe), tree.ceiling(probe));
+            assertEquals(expected.floor(probe), tree.floor(probe));
+            assertEquals(expected.higher(probe), tree.higher(probe));
+            assertEquals(expected.lower(probe), tree.lower(probe));
+            assertEquals(expected.contains(probe), tree.contains(probe));
+        }
+        assertEquals(expected.first(), tree.first());
+        assertEquals(expected.last(), tree.last());
+        List<Integer> sorted = new ArrayList<>(expected);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), tree.get(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> new PersistentBST<Integer>().get(0));
+    }
+
+    @Test
+    void emptyTree() {
+        PersistentBST<Integer> tree = new PersistentBST<>();
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.height());
+        assertNull(tree.ceiling(1));
+        assertThrows(NoSuchElementException.class, tree::first);
+        assertThrows(NoSuchElementException.class, () -> tree.iterator().next());
+    }
+
+    @Test
+    void balancedTreesStayBalanced() {
+        PersistentBST<Integer> tree = new PersistentBST<>(true);
+        for (int i = 0; i < 1 << 14; i++) {
+            tree = tree.add(i);
+        }
+        assertTrue(tree.isBalanced());
+        //an AVL tree of n nodes is at most 1.44 log2(n) high
+        assertTrue(tree.height() <= 21, "height " + tree.height());
+
+        for (int i = 0; i < 1 << 14; i += 2) {
+            tree = tree.remove(i);
+        }
+        assertTrue(tree.isBalanced());
+        assertEquals(1 << 13, tree.size());
+    }
+
+    @Test
+    void shapeMatchesBST() {
+        Random random = new Random(5);
+        for (boolean balanced : new boolean[] {false, true}) {
+            BST<Integer> mutable = new BST<>(balanced);
+            PersistentBST<Integer> persistent = new PersistentBST<>(balanced);
+            for (int i = 0; i < 3000; i++) {
+                int value = random.nextInt(2000);
+                if (random.nextInt(4) == 0) {
+                    mutable.remove(value);
+                    persistent = persistent.remove(value);
+                } else {
+                    mutable.add(value);
+                    persistent = persistent.add(value);
+                }
+                assertEquals(mutable.height(), persistent.height());
+            }
+            assertEquals(toList(mutable), toList(persistent));
+        }
+    }
+
+    @Test
+    void summariesFollowEveryVersion() {
+        Random random = new Random(13);
+        for (boolean balanced : new boolean[] {false, true}) {
+            //a summary that counts the nodes of a subtree has to equal its size
+            PersistentBST<Integer> tree = new PersistentBST<>(balanced, 
+                (data, height, leftHeight, leftSummary, rightHeight, rightSummary) -> 
+                    1 + leftSummary + rightSummary);
+            for (int i = 0; i < 2000; i++) {
+                int value = random.nextInt(500);
+                tree = random.nextInt(3) == 0 ? tree.remove(value) : tree.add(value);
+                assertEquals(tree.size(), tree.isEmpty() ? 0 : tree.root().summary);
+            }
+        }
+        assertEquals(0, new PersistentBST<Integer>().add(1).root().summary);
+    }
+
+    @Test
+    void unionAndDifferenceMatchTreeSet() {
+        Random random = new Random(14);
+        int[][] sizes = {{0, 0}, {0, 50}, {50, 0}, {1, 1}, {300, 400}, {3, 3000}, {3000, 3}, {40, 2000}};
+        for (boolean balanced : new boolean[] {false, true}) {
+            for (int[] size : sizes) {
+                int range = 2 * (size[0] + size[1]) + 1;
+                TreeSet<Integer> a = new TreeSet<>();
+                while (a.size() < size[0]) {
+                    a.add(random.nextInt(range));
+                }
+                TreeSet<Integer> b = new TreeSet<>();
+                while (b.size() < size[1]) {
+                    b.add(random.nextInt(range));
+                }
+                PersistentBST<Integer> treeA = tree(balanced, a, random);
+                PersistentBST<Integer> treeB = tree(balanced, b, random);
+
+                TreeSet<Integer> union = new TreeSet<>(a);
+                union.addAll(b);
+                TreeSet<Integer> difference = new TreeSet<>(a);
+                difference.removeAll(b);
+                String message = size[0] + "/" + size[1] + (balanced ? " balanced" : "");
+                PersistentBST<Integer> result = treeA.union(treeB);
+                assertEquals(new ArrayList<>(union), toList(result), message);
+                assertEquals(union.size(), result.size(), message);
+                if (balanced) {
+                    assertTrue(result.isBalanced(), message);
+                }
+                result = treeA.difference(treeB);
+                assertEquals(new ArrayList<>(difference), toList(result), message);
+                assertEquals(difference.size(), result.size(), message);
+                if (balanced) {
+                    assertTrue(result.isBalanced(), message);
+                }
+                assertEquals(new ArrayList<>(a), toList(treeA), message);
+                assertEquals(new ArrayList<>(b), toList(treeB), message);
+            }
+        }
+    }
+
+    @Test
+    void smallOperandsShareTheLargeTree() {
+        PersistentBST<Integer> large = new PersistentBST<>(true);
+        for (int i = 0; i < 100000; i += 2) {
+            large = large.add(i);
+        }
+        PersistentBST<Integer> small = new PersistentBST<Integer>(true).add(7).add(5001).add(99999);
+        Map<PersistentBST.Node<Integer>, Boolean> original = new IdentityHashMap<>();
+        collect(large.root(), original);
+
+        for (PersistentBST<Integer> result : List.of(large.union(small), small.union(large),
+                                                     large.difference(new PersistentBST<Integer>(true)
+                                                                      .add(10).add(5000).add(90000)))) {
+            Map<PersistentBST.Node<Integer>, Boolean> nodes = new IdentityHashMap<>();
+            collect(result.root(), nodes);
+            nodes.keySet().removeAll(original.keySet());
+            //only the paths to the three elements are copied, not the 50000 nodes
+            assertTrue(nodes.size() < 200, nodes.size() + " new nodes");
+            assertTrue(result.isBalanced());
+        }
+        assertEquals(50003, large.union(small).size());
+        assertSame(large, large.difference(small));
+    }
+
+    @Test
+    void unionKeepsTheElementsOfThisTree() {
+        String mine = new String("b");
+        String theirs = new String("b");
+        for (boolean balanced : new boolean[] {false, true}) {
+            PersistentBST<String> a = new PersistentBST<String>(balanced).add("a").add(mine);
+            PersistentBST<String> b = new PersistentBST<String>(balanced).add(theirs).add("c").add("d");
+            assertSame(mine, a.union(b).ceiling("b"));
+            assertSame(theirs, b.union(a).ceiling("b"));
+            //trees of different kinds are combined one element at a time
+            PersistentBST<String> other = new PersistentBST<String>(!balanced).add(theirs);
+            assertSame(mine, a.union(other).ceiling("b"));
+            assertFalse(a.difference(other).contains("b"));
+        }
+    }
+
+    @Test
+    void deepTreesInInsertionOrder() {
+        PersistentBST<Integer> a = new PersistentBST<>();
+        PersistentBST<Integer> b = new PersistentBST<>();
+        for (int i = 0; i < 5000; i++) {
+            a = a.add(2 * i);
+            b = b.add(3 * i);
+        }
+        TreeSet<Integer> union = new TreeSet<>();
+        TreeSet<Integer> difference = new TreeSet<>();
+        a.forEach(union::add);
+        a.forEach(difference::add);
+        b.forEach(union::add);
+        b.forEach(difference::remove);
+        assertEquals(new ArrayList<>(union), toList(a.union(b)));
+        assertEquals(new ArrayList<>(difference), toList(a.difference(b)));
+    }
+}